@@ -1,22 +1,29 @@
 package com.uade.tpo.marketplace.controllers;
 
 import com.uade.tpo.marketplace.service.AnalyticsService;
+import com.uade.tpo.marketplace.service.MetricsRollupService;
 import com.uade.tpo.marketplace.service.ReportsService;
+import com.uade.tpo.marketplace.service.TrendingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/analytics")
 @RequiredArgsConstructor
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final TrendingService trendingService;
 
     @PostMapping("/views")
     public ResponseEntity<Void> registerView(@RequestParam String contentId) {
         analyticsService.registerView(contentId);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.accepted().build();
     }
 
     @GetMapping("/content/{id}")
@@ -24,9 +31,26 @@ public class AnalyticsController {
         return ResponseEntity.ok(analyticsService.getContentMetrics(id));
     }
 
+    @GetMapping("/content/{id}/series")
+    public ResponseEntity<?> getContentSeries(@PathVariable String id,
+                                              @RequestParam(required = false) Instant from,
+                                              @RequestParam(required = false) Instant to,
+                                              @RequestParam(required = false) String granularidad) {
+        Instant hasta = to != null ? to : Instant.now();
+        Instant desde = from != null ? from : hasta.minus(Duration.ofDays(1));
+        if (!desde.isBefore(hasta)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Rango inválido"));
+        }
+        if (granularidad != null && MetricsRollupService.Tier.of(granularidad).isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Granularidad inválida (minuto, hora o dia)"));
+        }
+        return ResponseEntity.ok(analyticsService.getContentSeries(id, desde, hasta, granularidad));
+    }
+
     @GetMapping("/creator/{id}")
-    public ResponseEntity<?> getCreatorMetrics(@PathVariable String id) {
-        return ResponseEntity.ok(analyticsService.getCreatorMetrics(id));
+    public ResponseEntity<?> getCreatorMetrics(@PathVariable String id,
+                                               @RequestParam(defaultValue = "false") boolean detalle) {
+        return ResponseEntity.ok(analyticsService.getCreatorMetrics(id, detalle));
     }
 
     @GetMapping("/ranking")
@@ -36,6 +60,15 @@ public class AnalyticsController {
         return ResponseEntity.ok(analyticsService.getRanking(category, region, type));
     }
 
+    @GetMapping("/trending")
+    public ResponseEntity<?> getTrending(@RequestParam(defaultValue = "24h") String window,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        if (!trendingService.supports(window)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Ventana inválida (1h, 24h o 7d)"));
+        }
+        return ResponseEntity.ok(analyticsService.getTrending(window, limit));
+    }
+
     @GetMapping("/impact")
     public ResponseEntity<?> getImpact(@RequestParam(required = false) String region) {
         return ResponseEntity.ok(analyticsService.getImpact(region));
@@ -0,0 +1,115 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.controllers.WebSocketChatController.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Broadcast agrupado del chat en vivo (modo opcional)
+ *
+ * En lugar de enviar un frame STOMP por cada mensaje, los mensajes de cada
+ * transmisión se acumulan en una cola sin bloqueos y se envían como un único
+ * frame con un array de mensajes cada "live.chat.batch.interval-ms" milisegundos.
+ * Con el modo activo, los suscriptores de /topic/live/{liveId}/chat reciben
+ * arrays de ChatMessage en lugar de objetos sueltos.
+ *
+ * enqueue solo toma (o crea con computeIfAbsent) la cola y hace offer, sin locks
+ * del mapa. El flush quita con remove(clave, cola) las colas vacías durante
+ * IDLE_FLUSHES_BEFORE_RELEASE flushes seguidos y las vacía una vez más en el
+ * flush siguiente, por si un mensaje tomó la cola justo antes de quitarla.
+ */
+@Slf4j
+@Component
+public class ChatBatchBroadcaster {
+
+    private static final int IDLE_FLUSHES_BEFORE_RELEASE = 50;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final boolean enabled;
+    private final int maxPerFrame;
+
+    private final Map<String, Queue<ChatMessage>> buffers = new ConcurrentHashMap<>();
+    // Solo los usa flush(): flushes seguidos sin mensajes por transmisión y colas
+    // quitadas en el último flush (se vacían una vez más en el siguiente)
+    private final Map<String, Integer> idleFlushes = new HashMap<>();
+    private Map<String, Queue<ChatMessage>> retired = Collections.emptyMap();
+
+    public ChatBatchBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                @Value("${live.chat.batch.enabled:false}") boolean enabled,
+                                @Value("${live.chat.batch.max-per-frame:100}") int maxPerFrame) {
+        this.messagingTemplate = messagingTemplate;
+        this.enabled = enabled;
+        this.maxPerFrame = Math.max(1, maxPerFrame);
+    }
+
+    /**
+     * Indica si el chat se entrega en frames agrupados
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Encola un mensaje para el próximo frame de la transmisión
+     */
+    public void enqueue(String liveId, ChatMessage message) {
+        Queue<ChatMessage> buffer = buffers.get(liveId);
+        if (buffer == null) {
+            buffer = buffers.computeIfAbsent(liveId, id -> new ConcurrentLinkedQueue<>());
+        }
+        buffer.offer(message);
+    }
+
+    /**
+     * Envía los mensajes acumulados de cada transmisión como frames de a lo sumo
+     * "max-per-frame" mensajes
+     */
+    @Scheduled(fixedDelayString = "${live.chat.batch.interval-ms:75}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        // Mensajes que llegaron a colas ya quitadas en el flush anterior
+        retired.forEach(this::drain);
+        Map<String, Queue<ChatMessage>> removed = new HashMap<>();
+        for (Map.Entry<String, Queue<ChatMessage>> entry : buffers.entrySet()) {
+            String liveId = entry.getKey();
+            Queue<ChatMessage> buffer = entry.getValue();
+
+            if (!buffer.isEmpty()) {
+                drain(liveId, buffer);
+                idleFlushes.remove(liveId);
+            } else if (idleFlushes.merge(liveId, 1, Integer::sum) >= IDLE_FLUSHES_BEFORE_RELEASE
+                    && buffers.remove(liveId, buffer)) {
+                // Transmisión sin actividad hace tiempo: se libera la cola
+                removed.put(liveId, buffer);
+                idleFlushes.remove(liveId);
+            }
+        }
+        retired = removed;
+    }
+
+    private void drain(String liveId, Queue<ChatMessage> buffer) {
+        String destination = "/topic/live/" + liveId + "/chat";
+        List<ChatMessage> frame = new ArrayList<>(Math.min(maxPerFrame, 16));
+        ChatMessage message;
+        while ((message = buffer.poll()) != null) {
+            frame.add(message);
+            if (frame.size() >= maxPerFrame) {
+                messagingTemplate.convertAndSend(destination, frame);
+                frame = new ArrayList<>(Math.min(maxPerFrame, 16));
+            }
+        }
+        if (!frame.isEmpty()) {
+            messagingTemplate.convertAndSend(destination, frame);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,6 +20,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -122,9 +124,16 @@ public class ContentController {
     }
 
     // POST /api/contents/{id}/view
+    // El espectador sale del usuario autenticado (JWT); sin token se deduplica por
+    // la dirección del cliente. No se aceptan IDs enviados por el cliente: rotarlos
+    // permitiría contar la misma vista varias veces.
     @PostMapping("/{id}/view")
-    public ResponseEntity<Void> registerView(@PathVariable String id) {
-        contentService.incrementViewCount(id);
+    public ResponseEntity<Void> registerView(
+            @PathVariable String id,
+            Principal principal,
+            HttpServletRequest request) {
+        String viewer = principal != null ? "u:" + principal.getName() : "ip:" + request.getRemoteAddr();
+        contentService.incrementViewCount(id, viewer);
         return ResponseEntity.accepted().build();
     }
 
@@ -0,0 +1,159 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.controllers.WebSocketChatController.ChatMessage;
+import com.uade.tpo.marketplace.controllers.WebSocketChatController.QuestionMessage;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Actividad reciente de cada transmisión para los espectadores que se unen tarde
+ *
+ * Por transmisión se guarda en memoria (en cada nodo) un buffer acotado con:
+ * - Los últimos "live.snapshot.chat-size" mensajes de chat
+ * - Las últimas "live.snapshot.questions-size" preguntas con sus votos y estado
+ * - Los contadores de espectadores, donaciones y preguntas pendientes
+ *
+ * Se alimenta de los eventos del canal "live:events:*" (todos los nodos reciben
+ * todos los eventos), así el join entrega la sala completa en un solo frame sin
+ * consultar Redis. Lo anterior al arranque del nodo no está en el buffer; para
+ * eso siguen existiendo los endpoints REST de chat y preguntas.
+ */
+@Component
+public class LiveActivityBuffer {
+
+    private static final long IDLE_EVICTION_MS = 10 * 60 * 1000;
+
+    private final int chatSize;
+    private final int questionsSize;
+    private final Map<String, Activity> activities = new ConcurrentHashMap<>();
+
+    public LiveActivityBuffer(@Value("${live.snapshot.chat-size:50}") int chatSize,
+                              @Value("${live.snapshot.questions-size:50}") int questionsSize) {
+        this.chatSize = Math.max(chatSize, 1);
+        this.questionsSize = Math.max(questionsSize, 1);
+    }
+
+    @EventListener
+    public void onLiveEvent(LiveEventMessage event) {
+        String liveId = event.getLiveId();
+        if (liveId == null) {
+            return;
+        }
+        if ("END".equals(event.getType())) {
+            activities.remove(liveId);
+            return;
+        }
+        activities.computeIfAbsent(liveId, id -> new Activity()).apply(event);
+    }
+
+    /**
+     * Instantánea de la sala: chat, preguntas recientes y estadísticas
+     */
+    public Map<String, Object> snapshot(String liveId) {
+        Activity activity = activities.get(liveId);
+        Map<String, Object> snapshot = activity != null ? activity.snapshot() : emptySnapshot();
+        snapshot.put("type", "SNAPSHOT");
+        snapshot.put("liveId", liveId);
+        snapshot.put("timestamp", Instant.now().toString());
+        return snapshot;
+    }
+
+    private static Map<String, Object> emptySnapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("chat", Collections.emptyList());
+        snapshot.put("questions", Collections.emptyList());
+        snapshot.put("stats", Collections.emptyMap());
+        return snapshot;
+    }
+
+    /**
+     * Libera los buffers de transmisiones sin eventos recientes (END perdido)
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_EVICTION_MS;
+        activities.values().removeIf(activity -> activity.lastEventAt < cutoff);
+    }
+
+    /**
+     * Buffer de una transmisión; las escrituras y la instantánea se sincronizan
+     * sobre la instancia (operaciones cortas, sin E/S)
+     */
+    private final class Activity {
+        private final ArrayDeque<ChatMessage> chat = new ArrayDeque<>(chatSize);
+        private final LinkedHashMap<String, QuestionMessage> questions = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QuestionMessage> eldest) {
+                return size() > questionsSize;
+            }
+        };
+        private final Map<String, Object> stats = new HashMap<>();
+        private volatile long lastEventAt = System.currentTimeMillis();
+
+        private synchronized void apply(LiveEventMessage event) {
+            lastEventAt = System.currentTimeMillis();
+            String timestamp = Instant.ofEpochMilli(
+                    event.getTimestamp() != null ? event.getTimestamp() : lastEventAt).toString();
+
+            switch (event.getType()) {
+                case "CHAT" -> {
+                    if (chat.size() >= chatSize) {
+                        chat.pollFirst();
+                    }
+                    chat.addLast(new ChatMessage(event.getUserId(), event.getText(), timestamp, "CHAT"));
+                }
+                case "QUESTION" -> {
+                    if (event.getQuestionId() != null) {
+                        questions.put(event.getQuestionId(), new QuestionMessage(event.getQuestionId(), "NEW",
+                                event.getUserId(), event.getUserName(), event.getText(), 0L, timestamp));
+                    }
+                }
+                case "QUESTION_UPVOTE", "QUESTION_ANSWERED" -> {
+                    QuestionMessage question = event.getQuestionId() != null
+                            ? questions.get(event.getQuestionId()) : null;
+                    if (question != null) {
+                        if (event.getVotes() != null) {
+                            question.setVotes(event.getVotes());
+                        }
+                        if ("QUESTION_ANSWERED".equals(event.getType())) {
+                            question.setType("ANSWERED");
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+
+            putIfPresent("viewersCount", event.getViewers());
+            putIfPresent("donationCount", event.getDonationCount());
+            putIfPresent("totalDonations", event.getDonationTotal());
+            putIfPresent("pendingQuestions", event.getPendingQuestions());
+        }
+
+        private void putIfPresent(String key, Object value) {
+            if (value != null) {
+                stats.put(key, value);
+            }
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            List<QuestionMessage> questionCopies = new ArrayList<>(questions.size());
+            for (QuestionMessage q : questions.values()) {
+                questionCopies.add(new QuestionMessage(q.getId(), q.getType(), q.getUserId(), q.getUserName(),
+                        q.getQuestion(), q.getVotes(), q.getTimestamp()));
+            }
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("chat", new ArrayList<>(chat));
+            snapshot.put("questions", questionCopies);
+            snapshot.put("stats", new HashMap<>(stats));
+            return snapshot;
+        }
+    }
+}
@@ -1,17 +1,30 @@
 package com.uade.tpo.marketplace.controllers;
 
+import com.uade.tpo.marketplace.entity.dto.LiveSummary;
 import com.uade.tpo.marketplace.entity.mongodb.Transmision;
+import com.uade.tpo.marketplace.service.BlocklistChatFilter;
+import com.uade.tpo.marketplace.service.ChatModerationFilter.ModerationResult;
+import com.uade.tpo.marketplace.service.ChatModerationService;
+import com.uade.tpo.marketplace.service.LiveArchiveService;
+import com.uade.tpo.marketplace.service.LiveQuestionService;
 import com.uade.tpo.marketplace.service.LiveService;
+import com.uade.tpo.marketplace.service.MuteChatFilter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/live")
@@ -20,19 +33,41 @@ public class LiveController {
 
     private final LiveService liveService;
     private final WebSocketChatController webSocketChatController;
+    private final LiveStatsHub liveStatsHub;
+    private final LiveArchiveService liveArchiveService;
+    private final LiveReactionAggregator liveReactionAggregator;
+    private final ChatModerationService chatModerationService;
+    private final MuteChatFilter muteChatFilter;
+    private final BlocklistChatFilter blocklistChatFilter;
 
+    /**
+     * GET /api/live/{id}/chat?since={streamId}
+     * Obtiene el chat en vivo. Con "since" solo devuelve los mensajes
+     * posteriores al último ID de stream que el cliente ya recibió.
+     */
     @GetMapping("/{id}/chat")
-    public ResponseEntity<?> liveChat(@PathVariable String id) {
-        return ResponseEntity.ok(liveService.liveChat(id));
+    public ResponseEntity<?> liveChat(
+            @PathVariable String id,
+            @RequestParam(required = false) String since) {
+        return ResponseEntity.ok(liveService.liveChat(id, since));
     }
 
     @PostMapping("/{id}/chat")
-    public ResponseEntity<Void> sendChatMessage(
+    public ResponseEntity<?> sendChatMessage(
             @PathVariable String id, 
             @RequestParam String userId, 
             @RequestBody Map<String, String> body) {
-        String mensaje = body.get("mensaje");
+        ModerationResult moderation = chatModerationService.moderate(id, userId, body.get("mensaje"));
+        if (moderation.isRejected()) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("reason", moderation.reason()));
+        }
+        String mensaje = moderation.text();
         liveService.sendChatMessage(id, userId, mensaje);
+        
+        // Notificar via WebSocket a los espectadores de este nodo
+        // (los demás nodos lo reciben a través del relay de eventos)
+        webSocketChatController.sendChatNotification(id, userId, mensaje, Instant.now().toString());
+        
         return ResponseEntity.ok().build();
     }
 
@@ -43,7 +78,7 @@ public class LiveController {
             @RequestParam String donorName,
             @RequestParam String creatorId,
             @RequestParam Double amount) {
-        liveService.donate(id, donorId, creatorId, amount);
+        liveService.donate(id, donorId, donorName, creatorId, amount);
         
         // Notificar via WebSocket a todos los espectadores
         webSocketChatController.sendDonationNotification(id, donorName, amount);
@@ -51,19 +86,149 @@ public class LiveController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * GET /api/live/{id}/donations/top?limit={limit}
+     * Obtiene el ranking de donantes de la transmisión
+     */
+    @GetMapping("/{id}/donations/top")
+    public ResponseEntity<List<Map<String, Object>>> getDonationLeaderboard(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(liveService.getDonationLeaderboard(id, limit));
+    }
+
+    // ========== MODERACIÓN ==========
+
+    /**
+     * POST /api/live/{id}/mutes?userId=&minutes=10
+     * Silencia a un usuario en el chat de la transmisión (en todos los nodos)
+     */
+    @PostMapping("/{id}/mutes")
+    public ResponseEntity<Void> muteUser(
+            @PathVariable String id,
+            @RequestParam String userId,
+            @RequestParam(defaultValue = "10") long minutes) {
+        muteChatFilter.mute(id, userId, java.time.Duration.ofMinutes(minutes).toMillis());
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/{id}/mutes/{userId}")
+    public ResponseEntity<Void> unmuteUser(@PathVariable String id, @PathVariable String userId) {
+        muteChatFilter.unmute(id, userId);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/{id}/mutes")
+    public ResponseEntity<Map<String, Long>> getMutes(@PathVariable String id) {
+        return ResponseEntity.ok(muteChatFilter.getMutes(id));
+    }
+
+    /**
+     * GET/PUT /api/live/moderation/blocklist
+     * Consulta o reemplaza las palabras bloqueadas del chat (se recargan sin reiniciar)
+     */
+    @GetMapping("/moderation/blocklist")
+    public ResponseEntity<Set<String>> getBlocklist() {
+        return ResponseEntity.ok(blocklistChatFilter.getWords());
+    }
+
+    @PutMapping("/moderation/blocklist")
+    public ResponseEntity<Set<String>> replaceBlocklist(@RequestBody List<String> words) {
+        blocklistChatFilter.replaceWords(words);
+        return ResponseEntity.ok(blocklistChatFilter.getWords());
+    }
+
+    /**
+     * POST /api/live/{id}/reactions?reaction=heart&count=1
+     * Registra reacciones (se agregan en memoria y se envían en el próximo frame REACTIONS)
+     */
+    @PostMapping("/{id}/reactions")
+    public ResponseEntity<Void> react(
+            @PathVariable String id,
+            @RequestParam String reaction,
+            @RequestParam(defaultValue = "1") int count) {
+        return liveReactionAggregator.record(id, reaction, count)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * GET /api/live/{id}/reactions
+     * Totales de reacciones por tipo
+     */
+    @GetMapping("/{id}/reactions")
+    public ResponseEntity<Map<String, Long>> getReactions(@PathVariable String id) {
+        return ResponseEntity.ok(liveReactionAggregator.getTotals(id));
+    }
+
     @PostMapping("/{id}/questions")
     public ResponseEntity<Void> sendQuestion(
             @PathVariable String id, 
             @RequestParam String userId,
             @RequestBody Map<String, String> body) {
         String question = body.get("question");
-        liveService.sendQuestion(id, userId, question);
+        String questionId = liveService.sendQuestion(id, userId, null, question);
+        if (questionId != null) {
+            webSocketChatController.sendQuestionNotification(id, questionId, userId, null, question,
+                    Instant.now().toString());
+        }
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * GET /api/live/{id}/questions?estado=PENDIENTE&sort=votes&cursor=&limit=20
+     * Página de preguntas. Pendientes ordenadas por votos ("votes") o por llegada ("time");
+     * con estado=RESPONDIDA, las respondidas de la más reciente a la más antigua.
+     * Para la página siguiente se envía el "nextCursor" recibido.
+     */
     @GetMapping("/{id}/questions")
-    public ResponseEntity<?> getQuestions(@PathVariable String id) {
-        return ResponseEntity.ok(liveService.getQuestions(id));
+    public ResponseEntity<?> getQuestions(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "PENDIENTE") String estado,
+            @RequestParam(defaultValue = "votes") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(liveService.getQuestions(id, estado, sort, cursor, limit));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Cursor inválido"));
+        }
+    }
+
+    /**
+     * POST /api/live/{id}/questions/{questionId}/upvote?userId=
+     * Vota una pregunta pendiente (un voto por usuario)
+     */
+    @PostMapping("/{id}/questions/{questionId}/upvote")
+    public ResponseEntity<?> upvoteQuestion(
+            @PathVariable String id,
+            @PathVariable String questionId,
+            @RequestParam String userId) {
+        long votes = liveService.upvoteQuestion(id, questionId, userId);
+        if (votes == LiveQuestionService.NOT_PENDING) {
+            return ResponseEntity.notFound().build();
+        }
+        if (votes == LiveQuestionService.ALREADY_VOTED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "El usuario ya votó esta pregunta"));
+        }
+        webSocketChatController.sendQuestionUpdate(id, "UPVOTE", questionId, votes);
+        return ResponseEntity.ok(Map.of("questionId", questionId, "votes", votes));
+    }
+
+    /**
+     * POST /api/live/{id}/questions/{questionId}/answer
+     * Marca una pregunta como respondida (sale de la cola de pendientes)
+     */
+    @PostMapping("/{id}/questions/{questionId}/answer")
+    public ResponseEntity<?> answerQuestion(
+            @PathVariable String id,
+            @PathVariable String questionId) {
+        long votes = liveService.answerQuestion(id, questionId);
+        if (votes == LiveQuestionService.NOT_PENDING) {
+            return ResponseEntity.notFound().build();
+        }
+        webSocketChatController.sendQuestionUpdate(id, "ANSWERED", questionId, votes);
+        return ResponseEntity.ok(Map.of("questionId", questionId, "votes", votes));
     }
 
     @GetMapping("/{id}/events")
@@ -71,15 +236,57 @@ public class LiveController {
         return ResponseEntity.ok(liveService.streamEvents(id));
     }
 
+    /**
+     * GET /api/live/{id}/events/stream
+     * Estadísticas en vivo por Server-Sent Events (alternativa al polling de /events).
+     * Envía la instantánea completa al conectar y luego solo los campos que cambian
+     * (event: stats). Al finalizar la transmisión envía "event: end" y cierra el stream.
+     */
+    @GetMapping(value = "/{id}/events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEventsPush(@PathVariable String id) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header("X-Accel-Buffering", "no") // Evita que nginx acumule el stream
+                .body(liveStatsHub.subscribe(id));
+    }
+
+    /**
+     * GET /api/live/replay/{contenidoId}?offsetMs=0&durationMs=60000
+     * Chat, preguntas y donaciones archivados de una transmisión guardada como contenido,
+     * para la ventana de reproducción [offsetMs, offsetMs + durationMs). Cada evento
+     * incluye su "offsetMs" desde el inicio de la transmisión.
+     */
+    @GetMapping("/replay/{contenidoId}")
+    public ResponseEntity<Map<String, Object>> getReplay(
+            @PathVariable String contenidoId,
+            @RequestParam(defaultValue = "0") long offsetMs,
+            @RequestParam(defaultValue = "60000") long durationMs) {
+        return liveArchiveService.getReplay(contenidoId, offsetMs, durationMs)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PostMapping("/{id}/join")
     public ResponseEntity<Void> joinLive(@PathVariable String id, @RequestParam String userId) {
-        liveService.joinLive(id, userId);
+        liveService.joinLive(id, userId, null);
+        webSocketChatController.sendViewerNotification(id, "USER_JOINED", userId, null, Instant.now().toString());
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * POST /api/live/{id}/heartbeat
+     * Renueva la presencia del espectador (enviar periódicamente mientras mira)
+     */
+    @PostMapping("/{id}/heartbeat")
+    public ResponseEntity<Void> heartbeat(@PathVariable String id, @RequestParam String userId) {
+        liveService.heartbeat(id, userId);
         return ResponseEntity.ok().build();
     }
 
     @PostMapping("/{id}/leave")
     public ResponseEntity<Void> leaveLive(@PathVariable String id, @RequestParam String userId) {
         liveService.leaveLive(id, userId);
+        webSocketChatController.sendViewerNotification(id, "USER_LEFT", userId, null, Instant.now().toString());
         return ResponseEntity.ok().build();
     }
 
@@ -133,12 +340,16 @@ public class LiveController {
     }
 
     /**
-     * GET /api/live/active
-     * Obtiene todas las transmisiones activas
+     * GET /api/live/active?categoria=&sort=viewers&limit=0
+     * Obtiene las transmisiones activas con su número de espectadores
+     * (registro en memoria, sin consultar la base de datos)
      */
     @GetMapping("/active")
-    public ResponseEntity<List<Transmision>> getActiveTransmissions() {
-        List<Transmision> transmissions = liveService.getActiveTransmissions();
+    public ResponseEntity<List<LiveSummary>> getActiveTransmissions(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(defaultValue = "recent") String sort,
+            @RequestParam(defaultValue = "0") int limit) {
+        List<LiveSummary> transmissions = liveService.getActiveTransmissions(categoria, sort, limit);
         return ResponseEntity.ok(transmissions);
     }
 
@@ -180,6 +391,15 @@ public class LiveController {
         return ResponseEntity.ok(Map.of("count", count));
     }
 
+    /**
+     * GET /api/live/{id}/viewers/stats
+     * Obtiene espectadores actuales, pico de concurrencia y serie por minuto
+     */
+    @GetMapping("/{id}/viewers/stats")
+    public ResponseEntity<Map<String, Object>> getViewersStats(@PathVariable String id) {
+        return ResponseEntity.ok(liveService.getViewersStats(id));
+    }
+
     // ========== DTOs ==========
 
     @Data
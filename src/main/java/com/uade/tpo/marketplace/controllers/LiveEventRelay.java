@@ -0,0 +1,95 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import com.uade.tpo.marketplace.service.LiveEventBus;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Puente entre Redis Pub/Sub y el broker STOMP local
+ *
+ * Cada nodo se suscribe una sola vez al patrón "live:events:*" y reenvía a sus
+ * suscriptores WebSocket locales (/topic/live/{liveId}/*) los eventos publicados
+ * por otros nodos. Los eventos originados en este nodo se descartan porque ya
+ * fueron entregados localmente por el controlador que los recibió.
+ *
+ * Además, todos los eventos (también los locales) se publican como eventos de
+ * aplicación para los componentes que mantienen estado derivado, como
+ * LiveStatsHub.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LiveEventRelay implements MessageListener {
+
+    private final RedisMessageListenerContainer listenerContainer;
+    private final PatternTopic liveEventsTopic;
+    private final LiveEventBus liveEventBus;
+    private final WebSocketChatController webSocketChatController;
+    private final LiveReactionAggregator liveReactionAggregator;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, liveEventsTopic);
+        log.info("Relay de eventos en vivo suscrito a {}", liveEventsTopic.getTopic());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        LiveEventMessage event = liveEventBus.decode(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (event == null || event.getType() == null) {
+            return;
+        }
+
+        try {
+            applicationEventPublisher.publishEvent(event);
+            if (!liveEventBus.isLocal(event)) {
+                relay(event);
+            }
+        } catch (Exception e) {
+            log.error("Error al reenviar evento {} de live {}: {}",
+                    event.getType(), event.getLiveId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Traduce el evento de Redis al mensaje STOMP equivalente
+     */
+    private void relay(LiveEventMessage event) {
+        String liveId = event.getLiveId();
+        String timestamp = event.getTimestamp() != null
+                ? Instant.ofEpochMilli(event.getTimestamp()).toString()
+                : Instant.now().toString();
+
+        switch (event.getType()) {
+            case "CHAT" -> webSocketChatController.sendChatNotification(
+                    liveId, event.getUserId(), event.getText(), timestamp);
+            case "QUESTION" -> webSocketChatController.sendQuestionNotification(
+                    liveId, event.getQuestionId(), event.getUserId(), event.getUserName(), event.getText(), timestamp);
+            case "QUESTION_UPVOTE" -> webSocketChatController.sendQuestionUpdate(
+                    liveId, "UPVOTE", event.getQuestionId(), event.getVotes() != null ? event.getVotes() : 0L);
+            case "QUESTION_ANSWERED" -> webSocketChatController.sendQuestionUpdate(
+                    liveId, "ANSWERED", event.getQuestionId(), event.getVotes() != null ? event.getVotes() : 0L);
+            case "JOIN" -> webSocketChatController.sendViewerNotification(
+                    liveId, "USER_JOINED", event.getUserId(), event.getUserName(), timestamp);
+            case "LEAVE" -> webSocketChatController.sendViewerNotification(
+                    liveId, "USER_LEFT", event.getUserId(), event.getUserName(), timestamp);
+            case "DONATION" -> webSocketChatController.sendDonationNotification(
+                    liveId, event.getUserName(), event.getAmount());
+            case "REACTIONS" -> liveReactionAggregator.broadcast(
+                    liveId, event.getReactions(), event.getReactionTotals(), timestamp);
+            default -> log.debug("Evento {} de live {} sin destino STOMP", event.getType(), liveId);
+        }
+    }
+}
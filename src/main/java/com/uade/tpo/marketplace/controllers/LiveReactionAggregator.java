@@ -0,0 +1,222 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.controllers.WebSocketChatController.ReactionBurstEvent;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import com.uade.tpo.marketplace.service.LiveEventBus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reacciones en vivo (corazones, aplausos...) con agregación local
+ *
+ * Cada toque solo incrementa un LongAdder en memoria por transmisión y tipo de
+ * reacción, sin pasar por Redis. Cada "live.reactions.flush-interval-ms":
+ * - Los deltas acumulados se suman a live:reactions:{liveId} (HASH) con
+ *   HINCRBY en un único pipeline para todas las transmisiones; el HASH vence
+ *   "live.reactions.totals-ttl-seconds" después de la última reacción
+ * - Se envía un frame REACTIONS con los deltas y los totales a
+ *   /topic/live/{liveId}/events de este nodo
+ * - Se publica el mismo frame en "live:events:{liveId}" para que los demás
+ *   nodos lo reenvíen a sus suscriptores
+ *
+ * Así una transmisión popular genera un frame por nodo e intervalo, no uno por toque.
+ *
+ * Un toque solo toma (o crea con computeIfAbsent) el contador de la transmisión
+ * y la reacción y suma, sin locks del mapa. El flush drena con sumThenReset y
+ * quita con remove(clave, contadores) las transmisiones sin reacciones durante
+ * IDLE_FLUSHES_BEFORE_RELEASE flushes seguidos; esos contadores se drenan una vez
+ * más en el flush siguiente, por si un toque los tomó justo antes de quitarlos.
+ * Si Redis no está disponible, los deltas vuelven a los contadores para el
+ * próximo flush (con otros errores el pipeline pudo aplicarse en parte y no se
+ * reintenta, para no contar dos veces).
+ */
+@Slf4j
+@Component
+public class LiveReactionAggregator {
+
+    private static final String REACTIONS_PREFIX = "live:reactions:";
+    private static final int IDLE_FLUSHES_BEFORE_RELEASE = 50;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final LiveEventBus liveEventBus;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Set<String> allowed;
+    private final int maxPerMessage;
+    private final long totalsTtlSeconds;
+
+    private final Map<String, Map<String, LongAdder>> counters = new ConcurrentHashMap<>();
+    // Solo los usa flush(): flushes seguidos sin reacciones por transmisión y
+    // contadores quitados en el último flush (se drenan una vez más en el siguiente)
+    private final Map<String, Integer> idleFlushes = new HashMap<>();
+    private Map<String, Map<String, LongAdder>> retired = Collections.emptyMap();
+
+    public LiveReactionAggregator(RedisTemplate<String, String> redisTemplate,
+                                  LiveEventBus liveEventBus,
+                                  SimpMessagingTemplate messagingTemplate,
+                                  @Value("${live.reactions.allowed:heart,clap,fire,laugh,wow}") List<String> allowed,
+                                  @Value("${live.reactions.max-per-message:50}") int maxPerMessage,
+                                  @Value("${live.reactions.totals-ttl-seconds:86400}") long totalsTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.liveEventBus = liveEventBus;
+        this.messagingTemplate = messagingTemplate;
+        this.allowed = Set.copyOf(allowed);
+        this.maxPerMessage = Math.max(1, maxPerMessage);
+        this.totalsTtlSeconds = Math.max(1, totalsTtlSeconds);
+    }
+
+    /**
+     * Registra reacciones de un cliente (puede agrupar varios toques en un mensaje)
+     * @param count Toques agrupados, acotado a "live.reactions.max-per-message"
+     * @return false si el tipo de reacción no está permitido
+     */
+    public boolean record(String liveId, String reaction, int count) {
+        if (liveId == null || reaction == null || !allowed.contains(reaction)) {
+            return false;
+        }
+        add(liveId, reaction, Math.min(Math.max(count, 1), maxPerMessage));
+        return true;
+    }
+
+    /**
+     * Totales acumulados de una transmisión
+     */
+    public Map<String, Long> getTotals(String liveId) {
+        Map<Object, Object> raw = redisTemplate.opsForHash().entries(REACTIONS_PREFIX + liveId);
+        Map<String, Long> totals = new TreeMap<>();
+        raw.forEach((reaction, total) -> totals.put(reaction.toString(), Long.parseLong(total.toString())));
+        return totals;
+    }
+
+    /**
+     * Envía los deltas del intervalo a Redis y a los suscriptores
+     */
+    @Scheduled(fixedDelayString = "${live.reactions.flush-interval-ms:250}")
+    public synchronized void flush() {
+        Map<String, Map<String, Long>> deltas = new LinkedHashMap<>();
+        // Toques que llegaron a contadores ya quitados en el flush anterior
+        retired.forEach((liveId, live) -> merge(deltas, liveId, drain(live)));
+        Map<String, Map<String, LongAdder>> removed = new HashMap<>();
+        for (Map.Entry<String, Map<String, LongAdder>> entry : counters.entrySet()) {
+            String liveId = entry.getKey();
+            Map<String, Long> liveDeltas = drain(entry.getValue());
+            if (!liveDeltas.isEmpty()) {
+                merge(deltas, liveId, liveDeltas);
+                idleFlushes.remove(liveId);
+            } else if (idleFlushes.merge(liveId, 1, Integer::sum) >= IDLE_FLUSHES_BEFORE_RELEASE
+                    && counters.remove(liveId, entry.getValue())) {
+                // Transmisión sin reacciones hace tiempo: se liberan sus contadores
+                removed.put(liveId, entry.getValue());
+                idleFlushes.remove(liveId);
+            }
+        }
+        retired = removed;
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Un HINCRBY por transmisión y tipo y un EXPIRE por transmisión, todos en un solo round trip
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                deltas.forEach((liveId, liveDeltas) -> {
+                    byte[] key = (REACTIONS_PREFIX + liveId).getBytes(StandardCharsets.UTF_8);
+                    liveDeltas.forEach((reaction, delta) -> connection.hashCommands()
+                            .hIncrBy(key, reaction.getBytes(StandardCharsets.UTF_8), delta));
+                    connection.keyCommands().expire(key, totalsTtlSeconds);
+                });
+                return null;
+            });
+
+            Iterator<Object> totals = results.iterator();
+            for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+                Map<String, Long> liveTotals = new TreeMap<>();
+                for (String reaction : entry.getValue().keySet()) {
+                    Object total = totals.hasNext() ? totals.next() : null;
+                    if (total instanceof Number number) {
+                        liveTotals.put(reaction, number.longValue());
+                    }
+                }
+                if (totals.hasNext()) {
+                    totals.next(); // Resultado del EXPIRE
+                }
+                publish(entry.getKey(), entry.getValue(), liveTotals);
+            }
+        } catch (RedisConnectionFailureException e) {
+            // Sin conexión no se aplicó ningún HINCRBY: los deltas quedan para el próximo flush
+            log.warn("Redis no disponible, {} transmisiones con reacciones pendientes: {}",
+                    deltas.size(), e.getMessage());
+            deltas.forEach((liveId, liveDeltas) -> liveDeltas.forEach((reaction, delta) ->
+                    add(liveId, reaction, delta)));
+        } catch (Exception e) {
+            log.error("Error al guardar reacciones de {} transmisiones: {}", deltas.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Envía un frame de reacciones a los suscriptores de este nodo
+     * Usado por el flush local y por el relay de eventos de otros nodos
+     */
+    public void broadcast(String liveId, Map<String, Long> reactions, Map<String, Long> totals, String timestamp) {
+        ReactionBurstEvent event = ReactionBurstEvent.builder()
+                .type("REACTIONS")
+                .liveId(liveId)
+                .reactions(reactions)
+                .totals(totals)
+                .timestamp(timestamp)
+                .build();
+        messagingTemplate.convertAndSend("/topic/live/" + liveId + "/events", event);
+    }
+
+    private void publish(String liveId, Map<String, Long> reactions, Map<String, Long> totals) {
+        long now = Instant.now().toEpochMilli();
+        broadcast(liveId, reactions, totals, Instant.ofEpochMilli(now).toString());
+        liveEventBus.publish(LiveEventMessage.builder()
+                .type("REACTIONS")
+                .liveId(liveId)
+                .timestamp(now)
+                .reactions(reactions)
+                .reactionTotals(totals)
+                .build());
+    }
+
+    private void add(String liveId, String reaction, long count) {
+        Map<String, LongAdder> live = counters.get(liveId);
+        if (live == null) {
+            live = counters.computeIfAbsent(liveId, id -> new ConcurrentHashMap<>());
+        }
+        LongAdder adder = live.get(reaction);
+        if (adder == null) {
+            adder = live.computeIfAbsent(reaction, r -> new LongAdder());
+        }
+        adder.add(count);
+    }
+
+    private static void merge(Map<String, Map<String, Long>> deltas, String liveId, Map<String, Long> liveDeltas) {
+        if (!liveDeltas.isEmpty()) {
+            Map<String, Long> target = deltas.computeIfAbsent(liveId, id -> new TreeMap<>());
+            liveDeltas.forEach((reaction, delta) -> target.merge(reaction, delta, Long::sum));
+        }
+    }
+
+    private static Map<String, Long> drain(Map<String, LongAdder> live) {
+        Map<String, Long> deltas = new TreeMap<>();
+        live.forEach((reaction, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.put(reaction, delta);
+            }
+        });
+        return deltas;
+    }
+}
@@ -0,0 +1,254 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import com.uade.tpo.marketplace.service.LiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Estadísticas en vivo por Server-Sent Events
+ *
+ * Mantiene en memoria una única instantánea de estadísticas por transmisión
+ * (espectadores, donaciones y preguntas pendientes), compartida por todos los
+ * suscriptores SSE de este nodo. La instantánea se carga desde Redis con el
+ * primer suscriptor y luego se actualiza con los contadores que traen los
+ * eventos del canal "live:events:{liveId}", sin consultar Redis por cada cliente.
+ *
+ * Los cambios se acumulan y se envían como diferencias (event: stats) cada
+ * "live.sse.push-interval-ms". Cada "live.sse.resync-interval-ms" se vuelve a
+ * leer Redis para corregir desvíos y se envía un keepalive a los clientes.
+ * Las transmisiones sin suscriptores no generan trabajo.
+ */
+@Slf4j
+@Component
+public class LiveStatsHub {
+
+    private static final String VIEWERS = "viewersCount";
+    private static final String DONATION_COUNT = "donationCount";
+    private static final String DONATION_TOTAL = "totalDonations";
+    private static final String PENDING_QUESTIONS = "pendingQuestions";
+    private static final long RECONNECT_MS = 3000;
+
+    private final LiveService liveService;
+    private final long timeoutMs;
+
+    private final Map<String, StatsChannel> channels = new ConcurrentHashMap<>();
+
+    public LiveStatsHub(LiveService liveService,
+                        @Value("${live.sse.timeout-ms:1800000}") long timeoutMs) {
+        this.liveService = liveService;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Registra un suscriptor SSE y le envía la instantánea completa actual
+     */
+    public SseEmitter subscribe(String liveId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        StatsChannel channel = channels.compute(liveId, (id, existing) -> {
+            StatsChannel c = existing != null ? existing : new StatsChannel();
+            c.emitters.add(emitter);
+            return c;
+        });
+
+        emitter.onCompletion(() -> unsubscribe(liveId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(liveId, emitter));
+
+        ensureLoaded(liveId, channel);
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("stats")
+                    .reconnectTime(RECONNECT_MS)
+                    .data(new HashMap<>(channel.current)));
+        } catch (Exception e) {
+            log.debug("No se pudo enviar la instantánea SSE de live {}: {}", liveId, e.getMessage());
+            emitter.completeWithError(e);
+        }
+
+        log.info("Suscriptor SSE agregado a live {} ({} suscriptores)", liveId, channel.emitters.size());
+        return emitter;
+    }
+
+    /**
+     * Aplica los contadores de un evento de Redis a la instantánea de la transmisión
+     * Solo se marca el cambio; el envío lo hace pushChanges
+     */
+    @EventListener
+    public void onLiveEvent(LiveEventMessage event) {
+        StatsChannel channel = channels.get(event.getLiveId());
+        if (channel == null) {
+            return;
+        }
+
+        if ("END".equals(event.getType())) {
+            channel.ended.set(true);
+        }
+        boolean changed = apply(channel, VIEWERS, event.getViewers())
+                | apply(channel, DONATION_COUNT, event.getDonationCount())
+                | apply(channel, DONATION_TOTAL, event.getDonationTotal())
+                | apply(channel, PENDING_QUESTIONS, event.getPendingQuestions());
+        if (changed) {
+            channel.dirty.set(true);
+        }
+    }
+
+    /**
+     * Envía a los suscriptores los campos que cambiaron desde el último envío
+     * y cierra los streams de las transmisiones finalizadas
+     */
+    @Scheduled(fixedDelayString = "${live.sse.push-interval-ms:250}")
+    public void pushChanges() {
+        for (Map.Entry<String, StatsChannel> entry : channels.entrySet()) {
+            String liveId = entry.getKey();
+            StatsChannel channel = entry.getValue();
+            try {
+                if (channel.dirty.getAndSet(false)) {
+                    Map<String, Object> diff = channel.takeDiff();
+                    if (!diff.isEmpty()) {
+                        broadcast(liveId, channel, () -> SseEmitter.event().name("stats").data(diff));
+                    }
+                }
+                if (channel.ended.get()) {
+                    close(liveId, channel);
+                }
+            } catch (Exception e) {
+                log.error("Error al enviar estadísticas SSE de live {}: {}", liveId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Relee las estadísticas de Redis para las transmisiones con suscriptores
+     * (corrige eventos perdidos) y envía un keepalive para que proxies y
+     * balanceadores no cierren conexiones sin tráfico
+     */
+    @Scheduled(fixedDelayString = "${live.sse.resync-interval-ms:30000}")
+    public void resync() {
+        for (Map.Entry<String, StatsChannel> entry : channels.entrySet()) {
+            String liveId = entry.getKey();
+            StatsChannel channel = entry.getValue();
+            try {
+                Map<String, Object> fresh = readSnapshot(liveId);
+                boolean changed = false;
+                for (Map.Entry<String, Object> field : fresh.entrySet()) {
+                    changed |= apply(channel, field.getKey(), field.getValue());
+                }
+                if (changed) {
+                    channel.dirty.set(true);
+                }
+                broadcast(liveId, channel, () -> SseEmitter.event().comment("keepalive"));
+            } catch (Exception e) {
+                log.error("Error al resincronizar estadísticas SSE de live {}: {}", liveId, e.getMessage());
+            }
+        }
+    }
+
+    private void ensureLoaded(String liveId, StatsChannel channel) {
+        if (channel.loaded) {
+            return;
+        }
+        synchronized (channel) {
+            if (!channel.loaded) {
+                Map<String, Object> snapshot = readSnapshot(liveId);
+                channel.current.putAll(snapshot);
+                channel.sent.putAll(snapshot);
+                channel.loaded = true;
+            }
+        }
+    }
+
+    private Map<String, Object> readSnapshot(String liveId) {
+        Object stats = liveService.streamEvents(liveId);
+        Map<String, Object> snapshot = new HashMap<>();
+        if (stats instanceof Map<?, ?> values) {
+            values.forEach((key, value) -> {
+                // Mismos tipos que los contadores de los eventos (Long / Double) para comparar
+                if (value instanceof Double || value instanceof Float) {
+                    snapshot.put(key.toString(), ((Number) value).doubleValue());
+                } else if (value instanceof Number number) {
+                    snapshot.put(key.toString(), number.longValue());
+                }
+            });
+        }
+        return snapshot;
+    }
+
+    private static boolean apply(StatsChannel channel, String field, Object value) {
+        if (value == null) {
+            return false;
+        }
+        Object previous = channel.current.put(field, value);
+        return !value.equals(previous);
+    }
+
+    /**
+     * Envía el evento a todos los suscriptores del live
+     * Cada emisor recibe un builder nuevo: build() no es reutilizable entre envíos
+     */
+    private void broadcast(String liveId, StatsChannel channel, Supplier<SseEmitter.SseEventBuilder> event) {
+        for (SseEmitter emitter : channel.emitters) {
+            try {
+                emitter.send(event.get());
+            } catch (Exception e) {
+                // Cliente desconectado: se descarta sin afectar al resto
+                log.debug("Suscriptor SSE de live {} descartado: {}", liveId, e.getMessage());
+                channel.emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+        if (channel.emitters.isEmpty()) {
+            channels.computeIfPresent(liveId, (id, c) -> c == channel && c.emitters.isEmpty() ? null : c);
+        }
+    }
+
+    private void close(String liveId, StatsChannel channel) {
+        broadcast(liveId, channel, () -> SseEmitter.event().name("end").data(Map.of("liveId", liveId)));
+        channels.remove(liveId, channel);
+        for (SseEmitter emitter : channel.emitters) {
+            emitter.complete();
+        }
+        log.info("Stream SSE de live {} cerrado (transmisión finalizada)", liveId);
+    }
+
+    private void unsubscribe(String liveId, SseEmitter emitter) {
+        channels.computeIfPresent(liveId, (id, c) -> {
+            c.emitters.remove(emitter);
+            return c.emitters.isEmpty() ? null : c;
+        });
+    }
+
+    /**
+     * Suscriptores e instantánea de una transmisión
+     * "current" refleja el último valor conocido; "sent" el último enviado
+     */
+    private static class StatsChannel {
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final Map<String, Object> current = new ConcurrentHashMap<>();
+        private final Map<String, Object> sent = new HashMap<>();
+        private final AtomicBoolean dirty = new AtomicBoolean(false);
+        private final AtomicBoolean ended = new AtomicBoolean(false);
+        private volatile boolean loaded = false;
+
+        private synchronized Map<String, Object> takeDiff() {
+            Map<String, Object> diff = new HashMap<>();
+            current.forEach((field, value) -> {
+                if (!value.equals(sent.get(field))) {
+                    diff.put(field, value);
+                }
+            });
+            sent.putAll(diff);
+            return diff;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.uade.tpo.marketplace.controllers;
 
+import com.uade.tpo.marketplace.controllers.config.WebSocketTrafficMetrics;
 import com.uade.tpo.marketplace.service.SystemService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 public class SystemController {
 
     private final SystemService systemService;
+    private final WebSocketTrafficMetrics webSocketTrafficMetrics;
 
     /**
      * GET /api/system/status
@@ -87,4 +89,14 @@ public class SystemController {
     public ResponseEntity<?> getSystemMetrics() {
         return ResponseEntity.ok(systemService.getSystemMetrics());
     }
+
+    /**
+     * GET /api/system/metrics/websocket
+     * Contadores de control de tráfico WebSocket de este nodo
+     * (mensajes limitados por sesión o transmisión y consumidores lentos)
+     */
+    @GetMapping("/metrics/websocket")
+    public ResponseEntity<?> getWebSocketMetrics() {
+        return ResponseEntity.ok(webSocketTrafficMetrics.snapshot());
+    }
 }
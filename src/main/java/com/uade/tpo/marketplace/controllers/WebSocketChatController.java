@@ -1,5 +1,7 @@
 package com.uade.tpo.marketplace.controllers;
 
+import com.uade.tpo.marketplace.service.ChatModerationFilter.ModerationResult;
+import com.uade.tpo.marketplace.service.ChatModerationService;
 import com.uade.tpo.marketplace.service.LiveService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,11 +13,13 @@ import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
 import java.time.Instant;
+import java.util.Map;
 
 /**
  * Controlador WebSocket para chat en vivo y eventos de streaming
@@ -34,11 +38,16 @@ public class WebSocketChatController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final LiveService liveService;
+    private final ChatBatchBroadcaster chatBatchBroadcaster;
+    private final LiveActivityBuffer liveActivityBuffer;
+    private final LiveReactionAggregator liveReactionAggregator;
+    private final ChatModerationService chatModerationService;
 
     /**
      * Maneja mensajes de chat enviados por clientes
      * Los clientes envían a: /app/live/{liveId}/chat
      * El servidor broadcast a: /topic/live/{liveId}/chat
+     * (en modo agrupado el mensaje se encola y se envía en el próximo frame)
      */
     @MessageMapping("/live/{liveId}/chat")
     @SendTo("/topic/live/{liveId}/chat")
@@ -50,6 +59,16 @@ public class WebSocketChatController {
         log.info("Mensaje de chat recibido para live {}: {} de {}", 
                 liveId, message.getContent(), message.getSender());
         
+        // Moderación antes de guardar y difundir (silencios y palabras bloqueadas)
+        ModerationResult moderation = chatModerationService.moderate(liveId, message.getSender(),
+                message.getContent());
+        if (moderation.isRejected()) {
+            sendToSession(headerAccessor.getSessionId(), "/queue/live/" + liveId + "/moderation",
+                    Map.of("type", "REJECTED", "reason", moderation.reason()));
+            return null;
+        }
+        message.setContent(moderation.text());
+        
         // Agregar timestamp
         message.setTimestamp(Instant.now().toString());
         
@@ -60,22 +79,32 @@ public class WebSocketChatController {
             log.error("Error al guardar mensaje en Redis: {}", e.getMessage());
         }
         
+        if (chatBatchBroadcaster.isEnabled()) {
+            chatBatchBroadcaster.enqueue(liveId, message);
+            return null; // @SendTo no envía nada si el retorno es null
+        }
         return message;
     }
 
     /**
      * Maneja eventos de usuario uniéndose a la transmisión
+     * Además envía a la sesión que se une la instantánea de la sala
+     * (chat, preguntas y estadísticas recientes) a /user/queue/live/{liveId}/snapshot
      */
     @MessageMapping("/live/{liveId}/join")
     @SendTo("/topic/live/{liveId}/events")
     public LiveEvent handleUserJoin(
             @DestinationVariable String liveId,
-            @Payload UserJoinMessage message) {
+            @Payload UserJoinMessage message,
+            SimpMessageHeaderAccessor headerAccessor) {
         
         log.info("Usuario {} se unió a live {}", message.getUserId(), liveId);
         
         // Registrar en Redis
-        liveService.joinLive(liveId, message.getUserId());
+        liveService.joinLive(liveId, message.getUserId(), message.getUserName());
+        
+        // Instantánea desde memoria, sin consultas a Redis
+        sendSnapshot(liveId, headerAccessor.getSessionId());
         
         return LiveEvent.builder()
                 .type("USER_JOINED")
@@ -108,6 +137,17 @@ public class WebSocketChatController {
                 .build();
     }
 
+    /**
+     * Maneja heartbeats de presencia de los espectadores
+     * Los clientes envían a: /app/live/{liveId}/heartbeat cada pocos segundos
+     */
+    @MessageMapping("/live/{liveId}/heartbeat")
+    public void handleHeartbeat(
+            @DestinationVariable String liveId,
+            @Payload HeartbeatMessage message) {
+        liveService.heartbeat(liveId, message.getUserId());
+    }
+
     /**
      * Maneja preguntas al presentador
      */
@@ -122,12 +162,130 @@ public class WebSocketChatController {
         
         message.setTimestamp(Instant.now().toString());
         
-        // Guardar en Redis
-        liveService.sendQuestion(liveId, message.getUserId(), message.getQuestion());
+        // Guardar en Redis (cola de Q&A)
+        String questionId = liveService.sendQuestion(liveId, message.getUserId(), message.getUserName(),
+                message.getQuestion());
+        if (questionId == null) {
+            return null;
+        }
         
+        message.setId(questionId);
+        message.setType("NEW");
+        message.setVotes(0L);
         return message;
     }
 
+    /**
+     * Maneja votos a preguntas pendientes
+     * Los clientes envían a: /app/live/{liveId}/question/upvote
+     * El servidor envía el delta (UPVOTE) a: /topic/live/{liveId}/questions
+     */
+    @MessageMapping("/live/{liveId}/question/upvote")
+    public void handleQuestionUpvote(
+            @DestinationVariable String liveId,
+            @Payload QuestionVoteMessage message) {
+        long votes = liveService.upvoteQuestion(liveId, message.getQuestionId(), message.getUserId());
+        if (votes >= 0) {
+            sendQuestionUpdate(liveId, "UPVOTE", message.getQuestionId(), votes);
+        }
+    }
+
+    /**
+     * Marca una pregunta como respondida (mismo efecto que POST /api/live/{id}/questions/{questionId}/answer)
+     * Los clientes envían a: /app/live/{liveId}/question/answer
+     * El servidor envía el delta (ANSWERED) a: /topic/live/{liveId}/questions
+     */
+    @MessageMapping("/live/{liveId}/question/answer")
+    public void handleQuestionAnswer(
+            @DestinationVariable String liveId,
+            @Payload QuestionVoteMessage message) {
+        long votes = liveService.answerQuestion(liveId, message.getQuestionId());
+        if (votes >= 0) {
+            sendQuestionUpdate(liveId, "ANSWERED", message.getQuestionId(), votes);
+        }
+    }
+
+    /**
+     * Maneja reacciones (corazones, aplausos...)
+     * Los clientes envían a: /app/live/{liveId}/reaction, pudiendo agrupar varios toques en "count"
+     * Se agregan en memoria y llegan a /topic/live/{liveId}/events como frames REACTIONS periódicos
+     */
+    @MessageMapping("/live/{liveId}/reaction")
+    public void handleReaction(
+            @DestinationVariable String liveId,
+            @Payload ReactionMessage message) {
+        int count = message.getCount() != null ? message.getCount() : 1;
+        liveReactionAggregator.record(liveId, message.getReaction(), count);
+    }
+
+    /**
+     * Envía la instantánea de la sala solo a la sesión indicada
+     * (sin usuario autenticado, el destino de usuario se resuelve por ID de sesión)
+     */
+    private void sendSnapshot(String liveId, String sessionId) {
+        sendToSession(sessionId, "/queue/live/" + liveId + "/snapshot", liveActivityBuffer.snapshot(liveId));
+    }
+
+    /**
+     * Envía un mensaje a una única sesión (destino /user{destination})
+     */
+    private void sendToSession(String sessionId, String destination, Object payload) {
+        if (sessionId == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, destination, payload, headers.getMessageHeaders());
+    }
+
+    /**
+     * Envía un mensaje de chat a los suscriptores de este nodo
+     * Usado por la API REST y por el relay de eventos de otros nodos
+     */
+    public void sendChatNotification(String liveId, String sender, String content, String timestamp) {
+        ChatMessage message = new ChatMessage(sender, content, timestamp, "CHAT");
+        if (chatBatchBroadcaster.isEnabled()) {
+            chatBatchBroadcaster.enqueue(liveId, message);
+            return;
+        }
+        messagingTemplate.convertAndSend("/topic/live/" + liveId + "/chat", message);
+    }
+
+    /**
+     * Envía una pregunta nueva a los suscriptores de este nodo
+     */
+    public void sendQuestionNotification(String liveId, String questionId, String userId, String userName,
+                                         String question, String timestamp) {
+        QuestionMessage message = new QuestionMessage(questionId, "NEW", userId, userName, question, 0L, timestamp);
+        messagingTemplate.convertAndSend("/topic/live/" + liveId + "/questions", message);
+    }
+
+    /**
+     * Envía un cambio de una pregunta existente (UPVOTE / ANSWERED) a los suscriptores
+     * de este nodo. Solo viaja el delta: ID, tipo y votos actuales.
+     */
+    public void sendQuestionUpdate(String liveId, String type, String questionId, long votes) {
+        QuestionMessage message = new QuestionMessage(questionId, type, null, null, null, votes,
+                Instant.now().toString());
+        messagingTemplate.convertAndSend("/topic/live/" + liveId + "/questions", message);
+    }
+
+    /**
+     * Envía un evento de espectador (USER_JOINED / USER_LEFT) a los suscriptores de este nodo
+     */
+    public void sendViewerNotification(String liveId, String type, String userId,
+                                       String userName, String timestamp) {
+        LiveEvent event = LiveEvent.builder()
+                .type(type)
+                .liveId(liveId)
+                .userId(userId)
+                .userName(userName)
+                .timestamp(timestamp)
+                .build();
+        messagingTemplate.convertAndSend("/topic/live/" + liveId + "/events", event);
+    }
+
     /**
      * Envía notificación de donación a todos los espectadores
      */
@@ -170,16 +328,42 @@ public class WebSocketChatController {
         private String userId;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HeartbeatMessage {
+        private String userId;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     public static class QuestionMessage {
+        private String id;
+        private String type; // "NEW", "UPVOTE", "ANSWERED"
         private String userId;
         private String userName;
         private String question;
+        private Long votes;
         private String timestamp;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuestionVoteMessage {
+        private String questionId;
+        private String userId;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReactionMessage {
+        private String reaction; // "heart", "clap", ...
+        private Integer count; // Toques agrupados (opcional, 1 por defecto)
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -203,11 +387,16 @@ public class WebSocketChatController {
         private Double amount;
         private String timestamp;
     }
-}
-
-
-
-
-
-
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @lombok.Builder
+    public static class ReactionBurstEvent {
+        private String type; // "REACTIONS"
+        private String liveId;
+        private Map<String, Long> reactions; // Reacciones del intervalo por tipo
+        private Map<String, Long> totals; // Totales acumulados por tipo
+        private String timestamp;
+    }
+}
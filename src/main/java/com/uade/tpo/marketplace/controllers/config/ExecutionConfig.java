@@ -0,0 +1,100 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Modo de ejecución de las tareas bloqueantes (hilos virtuales o pool de plataforma)
+ *
+ * Con "spring.threads.virtual.enabled=true" (Java 21):
+ * - Spring Boot atiende las peticiones HTTP de Tomcat con hilos virtuales
+ * - Los canales STOMP de entrada y salida usan hilos virtuales (WebSocketConfig),
+ *   así una llamada lenta a Redis o MongoDB en un @MessageMapping no ocupa
+ *   un hilo de plataforma y no demora al resto de las salas
+ * - Las tareas @Async (LogService) y los envíos a consumidores lentos también
+ *
+ * Con el modo desactivado se mantienen pools de hilos de plataforma acotados.
+ * Los canales STOMP tienen el mismo límite de concurrencia y de cola en ambos
+ * modos ("live.ws.channel.*"); solo cambia el tipo de hilo.
+ *
+ * Las tareas @Scheduled usan siempre un pool propio de hilos de plataforma
+ * ("spring.task.scheduling.pool.size"): con hilos virtuales Spring Boot las
+ * pasaría a un único hilo y un flush lento demoraría a todos los demás.
+ *
+ * Comparación de ambos modos: ChannelExecutorBenchmarkTest (-Dbenchmark=true).
+ */
+@Slf4j
+@Configuration
+public class ExecutionConfig {
+
+    private final boolean virtualThreads;
+
+    public ExecutionConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        log.info("Ejecución de tareas bloqueantes con hilos {}", virtualThreads ? "virtuales" : "de plataforma");
+    }
+
+    /**
+     * Executor de las tareas @Async
+     * Se declara con el nombre "taskExecutor" porque los executors de los canales
+     * STOMP impiden que Spring Boot configure el suyo, y sin él cada tarea
+     * @Async crearía un hilo de plataforma nuevo
+     */
+    @Bean(name = "taskExecutor")
+    public TaskExecutor taskExecutor(@Value("${app.async.pool-size:8}") int poolSize,
+                                     @Value("${app.async.queue-capacity:10000}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("async-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("async-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        return executor;
+    }
+
+    /**
+     * Scheduler de las tareas @Scheduled (flush de chat, vistas y reacciones,
+     * archivo, checkpoints, rollups...), independiente del modo de ejecución
+     */
+    @Bean(name = "taskScheduler")
+    public TaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:8}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setPoolSize(Math.max(poolSize, 1));
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+
+    /**
+     * Executor para un canal STOMP, igual en ambos modos salvo el tipo de hilo:
+     * concurrencia acotada (con hilos virtuales el pool solo limita cuántos mensajes
+     * se procesan a la vez; cada hilo es barato) y cola acotada: con la cola llena
+     * el canal rechaza el mensaje en lugar de acumular memoria sin límite
+     */
+    public ThreadPoolTaskExecutor channelExecutor(String namePrefix, int maxConcurrency, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name(namePrefix, 0).factory());
+        } else {
+            executor.setThreadNamePrefix(namePrefix);
+        }
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        executor.setQueueCapacity(queueCapacity);
+        return executor;
+    }
+}
@@ -1,13 +1,18 @@
 package com.uade.tpo.marketplace.controllers.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Configuración de Redis para:
@@ -67,19 +72,50 @@ public class RedisConfig {
      */
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
-            RedisConnectionFactory connectionFactory) {
+            RedisConnectionFactory connectionFactory, ThreadPoolTaskExecutor redisListenerExecutor) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(redisListenerExecutor);
         return container;
     }
 
     /**
-     * Topic para eventos de live streaming
+     * Executor de los listeners de Pub/Sub: un único hilo con cola acotada
+     *
+     * Los mensajes se procesan en el orden en que llegan de Redis (chat reenviado,
+     * JOIN antes que LEAVE, viewers absolutos), sin crear un hilo por mensaje.
+     * Con la cola llena el hilo de lectura de Redis espera lugar en vez de
+     * descartar o reordenar eventos.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor redisListenerExecutor(
+            @Value("${redis.pubsub.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("redis-pubsub-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Executor de Pub/Sub detenido");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrumpido esperando lugar en la cola de Pub/Sub", e);
+            }
+        });
+        return executor;
+    }
+
+    /**
+     * Patrón para eventos de live streaming (PSUBSCRIBE)
      * Formato del canal: "live:events:{liveId}"
      */
     @Bean
-    public ChannelTopic liveEventsTopic() {
-        return new ChannelTopic("live:events:*");
+    public PatternTopic liveEventsTopic() {
+        return new PatternTopic("live:events:*");
     }
 
     /**
@@ -0,0 +1,85 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Registro de scripts Lua de Redis (src/main/resources/scripts)
+ *
+ * Cada operación de varios pasos se ejecuta como un único script atómico, en un
+ * solo round trip. RedisTemplate ejecuta los scripts con EVALSHA y, si Redis
+ * responde NOSCRIPT (reinicio o SCRIPT FLUSH), reenvía el script con EVAL, que
+ * lo vuelve a dejar en cache. Al iniciar la aplicación se precargan todos con
+ * SCRIPT LOAD para que el primer uso ya encuentre el SHA en Redis.
+ */
+@Slf4j
+@Getter
+@Component
+public class RedisScripts {
+
+    private final RedisScript<String> chatSend = load("live/chat_send.lua", String.class);
+    private final RedisScript<Long> chatTrim = load("live/chat_trim.lua", Long.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> donationRecord = load("live/donation_record.lua", List.class);
+    private final RedisScript<Long> donationQueueTrim = load("live/donation_queue_trim.lua", Long.class);
+    private final RedisScript<String> questionSend = load("live/question_send.lua", String.class);
+    private final RedisScript<Long> questionUpvote = load("live/question_upvote.lua", Long.class);
+    private final RedisScript<Long> questionAnswer = load("live/question_answer.lua", Long.class);
+    private final RedisScript<Long> presenceTouch = load("live/presence_touch.lua", Long.class);
+    private final RedisScript<Long> hashMax = load("live/hash_max.lua", Long.class);
+    private final RedisScript<Long> presenceLeave = load("live/presence_leave.lua", Long.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> presenceSweep = load("live/presence_sweep.lua", List.class);
+    private final RedisScript<Long> liveStart = load("live/live_start.lua", Long.class);
+    private final RedisScript<Long> liveEnd = load("live/live_end.lua", Long.class);
+    private final RedisScript<Long> moderationBlocklistSet = load("live/moderation_blocklist_set.lua", Long.class);
+    private final RedisScript<Long> viewDedup = load("analytics/view_dedup.lua", Long.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> creatorCountersInit = load("analytics/creator_counters_init.lua", List.class);
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> contentRemove = load("analytics/content_remove.lua", List.class);
+    private final RedisScript<Long> contentDimensionsMove = load("analytics/content_dimensions_move.lua", Long.class);
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final RedisTemplate<String, String> redisTemplate;
+
+    public RedisScripts(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Precarga los scripts en Redis (SCRIPT LOAD)
+     * Si Redis no está disponible se continúa: el primer EVAL los cargará
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        List<RedisScript<?>> scripts = List.of(chatSend, chatTrim, donationRecord, donationQueueTrim, questionSend,
+                questionUpvote, questionAnswer, presenceTouch, hashMax, presenceLeave, presenceSweep, liveStart,
+                liveEnd, moderationBlocklistSet, viewDedup, creatorCountersInit, contentRemove,
+                contentDimensionsMove);
+        try {
+            for (RedisScript<?> script : scripts) {
+                byte[] source = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+                redisTemplate.execute((RedisCallback<String>) connection ->
+                        connection.scriptingCommands().scriptLoad(source));
+            }
+            log.info("{} scripts Lua precargados en Redis", scripts.size());
+        } catch (Exception e) {
+            log.warn("No se pudieron precargar los scripts Lua: {}", e.getMessage());
+        }
+    }
+
+    private static <T> RedisScript<T> load(String path, Class<T> resultType) {
+        return RedisScript.of(new ClassPathResource("scripts/" + path), resultType);
+    }
+}
@@ -0,0 +1,168 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manejo de consumidores lentos en las sesiones WebSocket
+ *
+ * Políticas ("live.ws.slow-consumer.policy"):
+ * - TERMINATE: comportamiento de Spring. Si un envío supera "send-time-limit-ms" o el
+ *   buffer de la sesión supera "send-buffer-size-limit" bytes, la sesión se cierra.
+ * - DROP: la sesión se envuelve en una cola propia con envío asíncrono. Cuando el
+ *   buffer supera el límite se descartan los mensajes más antiguos (para chat y
+ *   eventos en vivo solo importan los recientes). Si un único envío queda bloqueado
+ *   más de "send-time-limit-ms", la sesión se cierra igualmente.
+ *
+ * En ambos casos la memoria por sesión queda acotada y un cliente lento no
+ * demora los envíos al resto de la sala.
+ */
+@Slf4j
+@Component
+public class SlowConsumerDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    public enum Policy { DROP, TERMINATE }
+
+    private final WebSocketTrafficMetrics metrics;
+    private final Policy policy;
+    private final long sendTimeLimitNanos;
+    private final long bufferSizeLimit;
+    private final SimpleAsyncTaskExecutor sendExecutor = new SimpleAsyncTaskExecutor("ws-send-");
+
+    public SlowConsumerDecoratorFactory(WebSocketTrafficMetrics metrics,
+                                        @Value("${live.ws.slow-consumer.policy:TERMINATE}") Policy policy,
+                                        @Value("${live.ws.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                                        @Value("${live.ws.send-buffer-size-limit:524288}") long bufferSizeLimit,
+                                        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.metrics = metrics;
+        this.policy = policy;
+        this.sendTimeLimitNanos = sendTimeLimitMs * 1_000_000L;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendExecutor.setVirtualThreads(virtualThreads);
+        log.info("Política de consumidores lentos WebSocket: {}", policy);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                WebSocketSession decorated = policy == Policy.DROP
+                        ? new DropOldestSession(session)
+                        : new MonitoredSession(session);
+                super.afterConnectionEstablished(decorated);
+            }
+        };
+    }
+
+    /**
+     * Cuenta los cierres por consumidor lento (Spring cierra con SESSION_NOT_RELIABLE)
+     */
+    private class MonitoredSession extends WebSocketSessionDecorator {
+
+        private MonitoredSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            if (CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+                metrics.recordSlowConsumerDisconnect();
+                log.warn("Sesión WebSocket {} cerrada por consumidor lento", getId());
+            }
+            super.close(status);
+        }
+    }
+
+    /**
+     * Sesión con cola acotada por bytes que descarta los mensajes más antiguos
+     * Los envíos al socket los hace un único hilo por sesión mientras haya cola,
+     * así quien publica nunca queda bloqueado por este cliente.
+     */
+    private class DropOldestSession extends MonitoredSession {
+
+        private final Deque<WebSocketMessage<?>> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile long sendStartedAt = 0L;
+
+        private DropOldestSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            long started = sendStartedAt;
+            if (started != 0L && System.nanoTime() - started > sendTimeLimitNanos) {
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+
+            queue.offerLast(message);
+            long bytes = queuedBytes.addAndGet(message.getPayloadLength());
+
+            int dropped = 0;
+            while (bytes > bufferSizeLimit && queue.size() > 1) {
+                WebSocketMessage<?> oldest = queue.pollFirst();
+                if (oldest == null) {
+                    break;
+                }
+                bytes = queuedBytes.addAndGet(-oldest.getPayloadLength());
+                dropped++;
+            }
+            if (dropped > 0) {
+                metrics.recordSlowConsumerDrop(dropped);
+                log.debug("Sesión WebSocket {}: {} mensajes antiguos descartados", getId(), dropped);
+            }
+
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                WebSocketMessage<?> message;
+                while ((message = queue.pollFirst()) != null) {
+                    queuedBytes.addAndGet(-message.getPayloadLength());
+                    if (!isOpen()) {
+                        continue;
+                    }
+                    sendStartedAt = System.nanoTime();
+                    getDelegate().sendMessage(message);
+                    sendStartedAt = 0L;
+                }
+            } catch (Exception e) {
+                log.debug("Error al enviar a la sesión WebSocket {}: {}", getId(), e.getMessage());
+                queue.clear();
+                queuedBytes.set(0L);
+            } finally {
+                sendStartedAt = 0L;
+                draining.set(false);
+            }
+            // Mensajes encolados mientras se liberaba el flag
+            if (!queue.isEmpty() && isOpen()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
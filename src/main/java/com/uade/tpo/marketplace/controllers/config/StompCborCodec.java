@@ -0,0 +1,217 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payload binario CBOR negociado para STOMP (JSON sigue siendo el formato por defecto)
+ *
+ * Entrada: los SEND con "content-type: application/cbor" se convierten con un
+ * conversor CBOR; el resto sigue usando JSON.
+ *
+ * Salida: un cliente conectado por WebSocket nativo (no SockJS, que solo admite
+ * texto) pide CBOR con el header "accept-content-type: application/cbor" en el
+ * CONNECT. Los MESSAGE JSON destinados a esa sesión se recodifican a CBOR:
+ * - Los timestamps ISO ("timestamp", "answeredAt") viajan como epoch millis
+ * - Con STRINGREF, los nombres de campo y valores repetidos (por ejemplo el
+ *   mismo userId en un frame de chat agrupado) se envían una sola vez
+ * - Se envían como "content-type: application/octet-stream" (frame WebSocket
+ *   binario) con el header "payload-format: cbor"
+ *
+ * Un broadcast comparte el mismo payload para todos los suscriptores, por lo que
+ * la recodificación se hace una vez por mensaje y se reutiliza (cache por identidad).
+ */
+@Slf4j
+@Component
+public class StompCborCodec implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    private static final String ACCEPT_HEADER = "accept-content-type";
+    private static final String FORMAT_HEADER = "payload-format";
+    private static final String NATIVE_SESSION_ATTR = "ws.native";
+    private static final Set<String> TIMESTAMP_FIELDS = Set.of("timestamp", "answeredAt");
+    private static final int CACHE_LIMIT = 1024;
+
+    private final boolean enabled;
+    private final ObjectMapper jsonMapper;
+    private final CBORMapper cborMapper;
+
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // Clave byte[]: igualdad por identidad, el mismo payload de un broadcast
+    private final Map<byte[], byte[]> encoded = new ConcurrentHashMap<>();
+
+    public StompCborCodec(ObjectMapper jsonMapper,
+                          @Value("${live.ws.cbor.enabled:true}") boolean enabled,
+                          @Value("${live.ws.cbor.stringref:true}") boolean stringRef) {
+        this.enabled = enabled;
+        this.jsonMapper = jsonMapper;
+        CBORFactory factory = CBORFactory.builder()
+                .configure(CBORGenerator.Feature.STRINGREF, stringRef)
+                .build();
+        this.cborMapper = new CBORMapper(factory);
+    }
+
+    /**
+     * Conversor de entrada para SEND con "content-type: application/cbor"
+     * Solo aplica con ese content-type exacto, así no reemplaza al JSON por defecto
+     */
+    public MessageConverter inboundConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(APPLICATION_CBOR);
+        converter.setObjectMapper(cborMapper);
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    /**
+     * Marca las sesiones WebSocket nativas (las de SockJS no admiten frames binarios)
+     */
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                boolean nativeSession = !(WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession);
+                session.getAttributes().put(NATIVE_SESSION_ATTR, nativeSession);
+                super.afterConnectionEstablished(session);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (type == null || sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case CONNECT -> negotiate(message, sessionId);
+            case DISCONNECT -> cborSessions.remove(sessionId);
+            case MESSAGE -> {
+                if (cborSessions.contains(sessionId)) {
+                    return toCbor(message);
+                }
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private void negotiate(Message<?> message, String sessionId) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT
+                && accessor.getCommand() != StompCommand.STOMP) {
+            return;
+        }
+        String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+        if (accept == null || !APPLICATION_CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(accept))) {
+            return;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && Boolean.TRUE.equals(attributes.get(NATIVE_SESSION_ATTR))) {
+            cborSessions.add(sessionId);
+            log.debug("Sesión {} negoció payload CBOR", sessionId);
+        } else {
+            log.debug("Sesión {} pidió CBOR por SockJS: se mantiene JSON", sessionId);
+        }
+    }
+
+    /**
+     * Recodifica un MESSAGE JSON a CBOR, reutilizando la conversión del mismo payload
+     */
+    private Message<?> toCbor(Message<?> message) {
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof MimeType mime ? mime
+                : contentType != null ? MimeTypeUtils.parseMimeType(contentType.toString()) : null;
+        if (!(message.getPayload() instanceof byte[] json) || json.length == 0
+                || mimeType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            return message;
+        }
+
+        byte[] cbor = encoded.get(json);
+        if (cbor == null) {
+            try {
+                JsonNode tree = jsonMapper.readTree(json);
+                epochTimestamps(tree);
+                cbor = cborMapper.writeValueAsBytes(tree);
+            } catch (Exception e) {
+                log.warn("No se pudo convertir el mensaje a CBOR, se envía JSON: {}", e.getMessage());
+                return message;
+            }
+            if (encoded.size() >= CACHE_LIMIT) {
+                encoded.clear();
+            }
+            encoded.put(json, cbor);
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(FORMAT_HEADER, "cbor");
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Reemplaza los timestamps ISO por epoch millis (recorre objetos y arrays)
+     */
+    private static void epochTimestamps(JsonNode node) {
+        if (node.isArray()) {
+            node.forEach(StompCborCodec::epochTimestamps);
+            return;
+        }
+        if (!(node instanceof ObjectNode object)) {
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isTextual() && TIMESTAMP_FIELDS.contains(field.getKey())) {
+                try {
+                    field.setValue(object.numberNode(Instant.parse(value.asText()).toEpochMilli()));
+                } catch (Exception ignored) {
+                    // No es un instante ISO: se deja como texto
+                }
+            } else if (value.isContainerNode()) {
+                epochTimestamps(value);
+            }
+        }
+    }
+}
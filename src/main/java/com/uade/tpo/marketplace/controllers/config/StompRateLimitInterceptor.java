@@ -0,0 +1,159 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Límite de mensajes entrantes STOMP (token bucket)
+ *
+ * Solo cuentan los mensajes de chat y preguntas (/app/live/{liveId}/chat,
+ * /app/live/{liveId}/question); heartbeat, join, leave, votos y reacciones no
+ * consumen tokens (tienen su propio control o se agregan en memoria):
+ * - Por sesión: cada mensaje consume un token de su sesión
+ * - Por transmisión: consume además un token compartido de la sala
+ *
+ * Los mensajes sin tokens disponibles se descartan antes de llegar a los
+ * controladores, así un usuario que envía en exceso no satura Redis ni el
+ * broadcast al resto de la sala.
+ */
+@Slf4j
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    private static final String LIVE_PREFIX = "/app/live/";
+    private static final long IDLE_EVICTION_NANOS = 60_000_000_000L;
+
+    private final WebSocketTrafficMetrics metrics;
+    private final double sessionCapacity;
+    private final double sessionRefillPerSecond;
+    private final double liveCapacity;
+    private final double liveRefillPerSecond;
+
+    private final Map<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> liveBuckets = new ConcurrentHashMap<>();
+
+    public StompRateLimitInterceptor(WebSocketTrafficMetrics metrics,
+                                     @Value("${live.ws.rate.session.capacity:10}") double sessionCapacity,
+                                     @Value("${live.ws.rate.session.refill-per-second:5}") double sessionRefillPerSecond,
+                                     @Value("${live.ws.rate.live.capacity:500}") double liveCapacity,
+                                     @Value("${live.ws.rate.live.refill-per-second:200}") double liveRefillPerSecond) {
+        this.metrics = metrics;
+        this.sessionCapacity = sessionCapacity;
+        this.sessionRefillPerSecond = sessionRefillPerSecond;
+        this.liveCapacity = liveCapacity;
+        this.liveRefillPerSecond = liveRefillPerSecond;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        String sessionId = accessor.getSessionId();
+        if (accessor.getCommand() == StompCommand.DISCONNECT) {
+            if (sessionId != null) {
+                sessionBuckets.remove(sessionId);
+            }
+            return message;
+        }
+        if (accessor.getCommand() != StompCommand.SEND || sessionId == null) {
+            return message;
+        }
+        String liveId = roomOf(accessor.getDestination());
+        if (liveId == null) {
+            return message;
+        }
+
+        TokenBucket sessionBucket = sessionBuckets.computeIfAbsent(sessionId,
+                id -> new TokenBucket(sessionCapacity, sessionRefillPerSecond));
+        if (!sessionBucket.tryConsume()) {
+            metrics.recordSessionThrottle();
+            log.debug("Mensaje de sesión {} descartado por límite de sesión ({})",
+                    sessionId, accessor.getDestination());
+            return null;
+        }
+
+        TokenBucket liveBucket = liveBuckets.computeIfAbsent(liveId,
+                id -> new TokenBucket(liveCapacity, liveRefillPerSecond));
+        if (!liveBucket.tryConsume()) {
+            metrics.recordLiveThrottle();
+            log.debug("Mensaje de sesión {} descartado por límite de live {}", sessionId, liveId);
+            return null;
+        }
+        return message;
+    }
+
+    /**
+     * Libera los buckets de transmisiones sin mensajes en el último minuto
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        liveBuckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    /**
+     * ID de transmisión para destinos de chat o preguntas, o null si el destino
+     * no está sujeto a los límites
+     */
+    private static String roomOf(String destination) {
+        if (destination == null || !destination.startsWith(LIVE_PREFIX)) {
+            return null;
+        }
+        String rest = destination.substring(LIVE_PREFIX.length());
+        int slash = rest.indexOf('/');
+        if (slash <= 0) {
+            return null;
+        }
+        String action = rest.substring(slash + 1);
+        return "chat".equals(action) || "question".equals(action) ? rest.substring(0, slash) : null;
+    }
+
+    /**
+     * Token bucket con recarga continua
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+        private volatile long lastUse;
+
+        private TokenBucket(double capacity, double refillPerSecond) {
+            this.capacity = Math.max(capacity, 1);
+            this.refillPerNano = Math.max(refillPerSecond, 0) / 1_000_000_000d;
+            this.tokens = this.capacity;
+            this.lastRefill = System.nanoTime();
+            this.lastUse = this.lastRefill;
+        }
+
+        private synchronized boolean tryConsume() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            lastUse = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean isIdle(long now) {
+            return now - lastUse >= IDLE_EVICTION_NANOS;
+        }
+    }
+}
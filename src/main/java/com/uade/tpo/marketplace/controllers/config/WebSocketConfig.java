@@ -1,10 +1,16 @@
 package com.uade.tpo.marketplace.controllers.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 /**
  * Configuración de WebSocket con STOMP para chat en vivo y eventos en tiempo real
@@ -14,11 +20,48 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  * - /app: Prefijo para mensajes del cliente al servidor
  * - /topic: Prefijo para mensajes broadcast (muchos clientes)
  * - /queue: Prefijo para mensajes punto a punto
+ *
+ * Control de tráfico:
+ * - Límite de mensajes entrantes por sesión y por transmisión (StompRateLimitInterceptor)
+ * - Límites de envío y política para consumidores lentos (SlowConsumerDecoratorFactory)
+ *
+ * Formato de payload: JSON por defecto, CBOR binario negociado por sesión (StompCborCodec)
+ *
+ * Ejecución: los canales de entrada y salida usan un executor con concurrencia y
+ * cola acotadas, de hilos virtuales o de plataforma según el modo (ver ExecutionConfig).
+ * En ambos modos se conserva el orden por sesión de los mensajes recibidos y enviados.
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompRateLimitInterceptor stompRateLimitInterceptor;
+    private final SlowConsumerDecoratorFactory slowConsumerDecoratorFactory;
+    private final StompCborCodec stompCborCodec;
+    private final ExecutionConfig executionConfig;
+    private final int channelMaxConcurrency;
+    private final int channelQueueCapacity;
+    private final int sendTimeLimitMs;
+    private final int sendBufferSizeLimit;
+
+    public WebSocketConfig(StompRateLimitInterceptor stompRateLimitInterceptor,
+                           SlowConsumerDecoratorFactory slowConsumerDecoratorFactory,
+                           StompCborCodec stompCborCodec,
+                           ExecutionConfig executionConfig,
+                           @Value("${live.ws.channel.max-concurrency:1000}") int channelMaxConcurrency,
+                           @Value("${live.ws.channel.queue-capacity:10000}") int channelQueueCapacity,
+                           @Value("${live.ws.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                           @Value("${live.ws.send-buffer-size-limit:524288}") int sendBufferSizeLimit) {
+        this.stompRateLimitInterceptor = stompRateLimitInterceptor;
+        this.slowConsumerDecoratorFactory = slowConsumerDecoratorFactory;
+        this.stompCborCodec = stompCborCodec;
+        this.executionConfig = executionConfig;
+        this.channelMaxConcurrency = channelMaxConcurrency;
+        this.channelQueueCapacity = channelQueueCapacity;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Habilitar un broker simple en memoria para mensajes broadcast
@@ -29,6 +72,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Prefijo para mensajes que vienen del cliente
         // Ejemplo: cliente envía a "/app/chat" -> manejado por @MessageMapping("/chat")
         config.setApplicationDestinationPrefixes("/app");
+
+        // Los mensajes a una misma sesión salen en el orden en que se publicaron
+        // (el canal de salida los procesa en paralelo entre sesiones)
+        config.setPreservePublishOrder(true);
         
         // Prefijo para mensajes de usuario específico
         config.setUserDestinationPrefix("/user");
@@ -38,10 +85,43 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Endpoint para que los clientes se conecten via WebSocket
         // URL: ws://localhost:8080/ws
+        // Los mensajes de una misma sesión se procesan en el orden en que llegaron
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*") // Permitir todos los orígenes (ajustar en producción)
                 .withSockJS(); // Fallback a SockJS para navegadores sin WebSocket
     }
-}
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Descarta mensajes de clientes que superan su límite antes de llegar a los controladores
+        // El codec registra qué sesiones negociaron CBOR en el CONNECT
+        registration.interceptors(stompRateLimitInterceptor, stompCborCodec);
+        registration.taskExecutor(executionConfig.channelExecutor("ws-inbound-",
+                channelMaxConcurrency, channelQueueCapacity));
+    }
 
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Recodifica a CBOR los mensajes de las sesiones que lo negociaron
+        registration.interceptors(stompCborCodec);
+        registration.taskExecutor(executionConfig.channelExecutor("ws-outbound-",
+                channelMaxConcurrency, channelQueueCapacity));
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // CBOR solo para "content-type: application/cbor"; se mantienen los conversores por defecto (JSON)
+        messageConverters.add(stompCborCodec.inboundConverter());
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Tiempo máximo de un envío y bytes en buffer por sesión antes de aplicar la política
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .addDecoratorFactory(slowConsumerDecoratorFactory)
+                .addDecoratorFactory(stompCborCodec);
+    }
+}
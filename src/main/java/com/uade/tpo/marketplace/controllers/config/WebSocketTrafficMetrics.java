@@ -0,0 +1,50 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de control de tráfico WebSocket
+ * - Mensajes entrantes descartados por límite de la sesión o de la transmisión
+ * - Mensajes salientes descartados a consumidores lentos (política DROP)
+ * - Sesiones cerradas por consumidor lento (política TERMINATE o tiempo de envío excedido)
+ */
+@Component
+public class WebSocketTrafficMetrics {
+
+    private final LongAdder throttledBySession = new LongAdder();
+    private final LongAdder throttledByLive = new LongAdder();
+    private final LongAdder slowConsumerDropped = new LongAdder();
+    private final LongAdder slowConsumerDisconnected = new LongAdder();
+
+    public void recordSessionThrottle() {
+        throttledBySession.increment();
+    }
+
+    public void recordLiveThrottle() {
+        throttledByLive.increment();
+    }
+
+    public void recordSlowConsumerDrop(int messages) {
+        slowConsumerDropped.add(messages);
+    }
+
+    public void recordSlowConsumerDisconnect() {
+        slowConsumerDisconnected.increment();
+    }
+
+    /**
+     * Valores acumulados desde el inicio del nodo
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("throttledBySession", throttledBySession.sum());
+        metrics.put("throttledByLive", throttledByLive.sum());
+        metrics.put("slowConsumerDropped", slowConsumerDropped.sum());
+        metrics.put("slowConsumerDisconnected", slowConsumerDisconnected.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,28 @@
+package com.uade.tpo.marketplace.entity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Resumen de una transmisión activa para el listado de /api/live/active
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class LiveSummary {
+    private String id;
+    private String creadorId;
+    private String titulo;
+    private String descripcion;
+    private String categoria;
+    private List<String> etiquetas;
+    private LocalDateTime fechaInicio;
+    private String urlStreaming;
+    private long espectadores; // Espectadores conectados (según los eventos de presencia)
+}
@@ -0,0 +1,55 @@
+package com.uade.tpo.marketplace.entity.mongodb;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Fragmento del archivo de una transmisión en vivo
+ * Agrupa los eventos (chat, preguntas y donaciones) de una ventana de tiempo,
+ * serializados como JSON y comprimidos con GZIP. La reproducción busca por
+ * transmisión y rango de tiempo y solo descomprime los fragmentos necesarios.
+ * El índice lo crea LiveArchiveService al iniciar (auto-index-creation está
+ * desactivado por defecto).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "transmision_fragmentos")
+@CompoundIndex(name = "transmision_rango", def = "{'transmisionId': 1, 'desde': 1, 'hasta': 1}")
+public class FragmentoTransmision {
+
+    @Id
+    private String id; // {transmisionId}:{bucket}
+
+    private String transmisionId;
+    private Long bucket; // Inicio de la ventana de tiempo (epoch ms)
+    private Long desde; // Fecha del primer evento (epoch ms)
+    private Long hasta; // Fecha del último evento (epoch ms)
+    private Integer cantidad; // Número de eventos
+    private byte[] eventos; // Lista de Evento en JSON comprimida con GZIP
+
+    /**
+     * Evento archivado (formato dentro del fragmento comprimido)
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Evento {
+        private String tipo; // CHAT, QUESTION, DONATION
+        private String id; // ID de stream, de pregunta o de donación
+        private Long ts; // epoch ms
+        private String userId;
+        private String userName;
+        private String texto;
+        private Double monto;
+    }
+}
@@ -0,0 +1,29 @@
+package com.uade.tpo.marketplace.entity.mongodb;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+/**
+ * Punto de la serie temporal de un contenido (vistas y likes de un intervalo)
+ * Se guarda en las colecciones time-series metricas_minuto, metricas_hora y
+ * metricas_dia (ver MetricsRollupService), una por granularidad.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricaContenido {
+
+    @Id
+    private String id;
+
+    private Instant ts; // Inicio del intervalo (campo de tiempo de la colección)
+    private String contenidoId; // Campo meta de la colección
+    private long vistas;
+    private long likes;
+}
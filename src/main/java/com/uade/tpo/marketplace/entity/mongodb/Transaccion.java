@@ -25,4 +25,5 @@ public class Transaccion {
     private Double monto;
     private LocalDateTime fecha;
     private String metodoPago;
+    private String transmisionId; // Transmisión en vivo donde se realizó (si aplica)
 }
\ No newline at end of file
@@ -49,6 +49,7 @@ public class Transmision {
     private Double montoTotalDonaciones; // Monto total recaudado
     private Integer totalPreguntas; // Número de preguntas recibidas
     private Integer totalMensajes; // Mensajes de chat
+    private LocalDateTime ultimoCheckpoint; // Último guardado periódico de estadísticas (transmisión activa)
     
     // Referencia al contenido creado (si se guarda como contenido)
     private String contenidoId; // ID del Contenido resultante
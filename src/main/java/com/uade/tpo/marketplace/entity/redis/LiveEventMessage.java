@@ -0,0 +1,45 @@
+package com.uade.tpo.marketplace.entity.redis;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Evento de transmisión en vivo publicado en el canal Pub/Sub "live:events:{liveId}"
+ * Se serializa como JSON para que todos los nodos puedan reenviarlo a sus
+ * suscriptores WebSocket locales
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LiveEventMessage implements Serializable {
+
+    private String origin; // ID del nodo que originó el evento
+    private String type; // CHAT, QUESTION, QUESTION_UPVOTE, QUESTION_ANSWERED, DONATION, JOIN, LEAVE, VIEWERS, REACTIONS, MUTE, UNMUTE, START, END
+    private String liveId;
+    private String userId;
+    private String userName;
+    private String text; // Mensaje, pregunta o título según el tipo
+    private Double amount; // Monto (solo DONATION)
+    private String questionId; // QUESTION, QUESTION_UPVOTE, QUESTION_ANSWERED
+    private Long timestamp; // Instant.now().toEpochMilli()
+    private Long mutedUntil; // MUTE (epoch ms)
+
+    // Contadores actualizados, completados por el script Lua que publica el evento
+    private Long viewers; // JOIN, LEAVE, VIEWERS
+    private Long donationCount; // DONATION
+    private Double donationTotal; // DONATION
+    private Long pendingQuestions; // QUESTION, QUESTION_ANSWERED
+    private Long votes; // QUESTION_UPVOTE, QUESTION_ANSWERED
+
+    // Reacciones agregadas por nodo e intervalo (REACTIONS)
+    private Map<String, Long> reactions; // Reacciones del intervalo por tipo
+    private Map<String, Long> reactionTotals; // Totales acumulados por tipo
+}
@@ -1,7 +1,9 @@
 package com.uade.tpo.marketplace.repository.mongodb;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import com.uade.tpo.marketplace.entity.mongodb.Contenido;
 
 public interface ContenidoRepository extends MongoRepository<Contenido, String> {
@@ -10,4 +12,18 @@ public interface ContenidoRepository extends MongoRepository<Contenido, String>
     List<Contenido> findByCategoriaAndCreadorId(String categoria, String creadorId);
     List<Contenido> findByTipo(String tipo);
     List<Contenido> findByEtiquetasContaining(String etiqueta);
+
+    /**
+     * Contenidos de un creador con solo el _id (proyección, sin el resto del documento)
+     */
+    @Query(value = "{ 'creadorId': ?0 }", fields = "{ '_id': 1 }")
+    List<Contenido> findIdsByCreadorId(String creadorId);
+
+    long countByCreadorId(String creadorId);
+
+    /**
+     * Resumen de varios contenidos en una sola consulta (título, tipo y categoría)
+     */
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'titulo': 1, 'tipo': 1, 'categoria': 1 }")
+    List<Contenido> findSummariesByIdIn(Collection<String> ids);
 }
@@ -0,0 +1,15 @@
+package com.uade.tpo.marketplace.repository.mongodb;
+
+import com.uade.tpo.marketplace.entity.mongodb.FragmentoTransmision;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface FragmentoTransmisionRepository extends MongoRepository<FragmentoTransmision, String> {
+
+    /**
+     * Fragmentos de una transmisión que se solapan con el rango [desde, hasta)
+     */
+    List<FragmentoTransmision> findByTransmisionIdAndHastaGreaterThanEqualAndDesdeLessThanOrderByDesdeAsc(
+            String transmisionId, Long desde, Long hasta);
+}
@@ -0,0 +1,160 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.entity.dto.LiveSummary;
+import com.uade.tpo.marketplace.entity.mongodb.Transmision;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import com.uade.tpo.marketplace.repository.mongodb.TransmisionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro en memoria (por nodo) de las transmisiones activas
+ *
+ * Se carga desde MongoDB al iniciar y se mantiene con los eventos del canal
+ * "live:events:*" que publica LiveService:
+ * - START: agrega la transmisión (una lectura por ID en MongoDB)
+ * - END: la quita
+ * - JOIN, LEAVE, VIEWERS: actualizan el número de espectadores
+ *
+ * Cada "live.registry.reconcile-interval-ms" se compara contra MongoDB para
+ * corregir eventos perdidos. Las entradas modificadas por un evento durante la
+ * reconciliación no se tocan, así una consulta vieja no pisa un evento reciente.
+ * Las lecturas de /api/live/active no consultan MongoDB ni Redis.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActiveLiveRegistry {
+
+    public static final String SORT_VIEWERS = "viewers";
+    public static final String SORT_RECENT = "recent";
+
+    private final TransmisionRepository transmisionRepository;
+    private final LivePresenceService livePresenceService;
+
+    private final Map<String, LiveSummary> actives = new ConcurrentHashMap<>();
+    // Última modificación por evento (ms), para no revertirla en la reconciliación
+    private final Map<String, Long> changedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Transmisiones activas, opcionalmente filtradas por categoría
+     * @param categoria Categoría exacta (sin distinguir mayúsculas), o null para todas
+     * @param sort "viewers" (más espectadores primero) o "recent" (más recientes primero)
+     * @param limit Máximo de resultados (0 = sin límite)
+     */
+    public List<LiveSummary> list(String categoria, String sort, int limit) {
+        Comparator<LiveSummary> order = SORT_VIEWERS.equalsIgnoreCase(sort)
+                ? Comparator.comparingLong(LiveSummary::getEspectadores).reversed()
+                : Comparator.comparing(LiveSummary::getFechaInicio,
+                        Comparator.nullsLast(Comparator.reverseOrder()));
+
+        return actives.values().stream()
+                .filter(live -> categoria == null || categoria.isBlank()
+                        || categoria.equalsIgnoreCase(live.getCategoria()))
+                .sorted(order.thenComparing(LiveSummary::getId))
+                .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                .toList();
+    }
+
+    public int size() {
+        return actives.size();
+    }
+
+    @EventListener
+    public void onLiveEvent(LiveEventMessage event) {
+        String liveId = event.getLiveId();
+        if (liveId == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case "START" -> {
+                changedAt.put(liveId, System.currentTimeMillis());
+                transmisionRepository.findById(liveId)
+                        .filter(t -> "ACTIVA".equals(t.getEstado()))
+                        .ifPresent(t -> actives.put(liveId, toSummary(t, 0L)));
+            }
+            case "END" -> {
+                changedAt.put(liveId, System.currentTimeMillis());
+                actives.remove(liveId);
+            }
+            case "JOIN", "LEAVE", "VIEWERS" -> {
+                if (event.getViewers() != null) {
+                    actives.computeIfPresent(liveId, (id, live) ->
+                            live.toBuilder().espectadores(event.getViewers()).build());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Carga inicial y reconciliación periódica contra MongoDB
+     * También refresca los espectadores desde Redis por si se perdieron eventos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${live.registry.reconcile-interval-ms:60000}",
+            fixedDelayString = "${live.registry.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Map<String, Transmision> stored = new HashMap<>();
+            for (Transmision transmision : transmisionRepository.findAllActive()) {
+                stored.put(transmision.getId(), transmision);
+            }
+
+            int added = 0;
+            int removed = 0;
+            for (Transmision transmision : stored.values()) {
+                if (changedSince(transmision.getId(), startedAt)) {
+                    continue;
+                }
+                long viewers = livePresenceService.getViewersCount(transmision.getId());
+                if (actives.put(transmision.getId(), toSummary(transmision, viewers)) == null) {
+                    added++;
+                }
+            }
+            for (String liveId : actives.keySet()) {
+                if (!stored.containsKey(liveId) && !changedSince(liveId, startedAt)) {
+                    actives.remove(liveId);
+                    removed++;
+                }
+            }
+            // Las marcas anteriores a esta reconciliación ya no protegen nada
+            changedAt.values().removeIf(ts -> ts < startedAt);
+
+            if (added > 0 || removed > 0) {
+                log.info("Registro de transmisiones activas reconciliado: {} agregadas, {} quitadas, {} activas",
+                        added, removed, actives.size());
+            }
+        } catch (Exception e) {
+            log.error("Error al reconciliar transmisiones activas: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean changedSince(String liveId, long startedAt) {
+        Long ts = changedAt.get(liveId);
+        return ts != null && ts >= startedAt;
+    }
+
+    private static LiveSummary toSummary(Transmision transmision, long viewers) {
+        return LiveSummary.builder()
+                .id(transmision.getId())
+                .creadorId(transmision.getCreadorId())
+                .titulo(transmision.getTitulo())
+                .descripcion(transmision.getDescripcion())
+                .categoria(transmision.getCategoria())
+                .etiquetas(transmision.getEtiquetas())
+                .fechaInicio(transmision.getFechaInicio())
+                .urlStreaming(transmision.getUrlStreaming())
+                .espectadores(viewers)
+                .build();
+    }
+}
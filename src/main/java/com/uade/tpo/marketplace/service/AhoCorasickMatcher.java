@@ -0,0 +1,221 @@
+package com.uade.tpo.marketplace.service;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Autómata Aho-Corasick precompilado para buscar muchas palabras a la vez
+ *
+ * El autómata se compila una vez a tablas de enteros (transiciones completas,
+ * sin seguir enlaces de fallo al buscar), así el recorrido de un texto es
+ * lineal en su largo y no crea objetos. Solo se crea el texto enmascarado
+ * cuando hay coincidencias.
+ *
+ * Las comparaciones ignoran mayúsculas y tildes (á -> a, ñ -> n).
+ * Es inmutable: para cambiar las palabras se compila un autómata nuevo.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final char[] FOLD = buildFold();
+    private static final char MASK = '*';
+
+    private final short[] charClass; // Carácter normalizado -> columna (0 = fuera del alfabeto)
+    private final int columns;
+    private final int[] transitions; // estado * columns + columna -> estado
+    private final int[] patternLength; // Largo de la palabra que termina en el estado (0 = ninguna)
+    private final int[] outputLink; // Estado más cercano por enlaces de fallo que termina una palabra (-1 = ninguno)
+    private final int size;
+
+    private AhoCorasickMatcher(short[] charClass, int columns, int[] transitions,
+                               int[] patternLength, int[] outputLink, int size) {
+        this.charClass = charClass;
+        this.columns = columns;
+        this.transitions = transitions;
+        this.patternLength = patternLength;
+        this.outputLink = outputLink;
+        this.size = size;
+    }
+
+    /**
+     * Compila el autómata para las palabras indicadas (se ignoran las vacías)
+     */
+    public static AhoCorasickMatcher compile(Collection<String> patterns) {
+        List<String> words = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            String word = fold(pattern.strip());
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        // Alfabeto: solo los caracteres que aparecen en alguna palabra
+        short[] charClass = new short[Character.MAX_VALUE + 1];
+        int columns = 1;
+        for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (charClass[c] == 0) {
+                    if (columns == Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Alfabeto de moderación demasiado grande");
+                    }
+                    charClass[c] = (short) columns++;
+                }
+            }
+        }
+
+        // Trie
+        List<int[]> goTo = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        goTo.add(new int[columns]);
+        lengths.add(0);
+        for (String word : words) {
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int column = charClass[word.charAt(i)];
+                int next = goTo.get(state)[column];
+                if (next == 0) {
+                    next = goTo.size();
+                    goTo.add(new int[columns]);
+                    lengths.add(0);
+                    goTo.get(state)[column] = next;
+                }
+                state = next;
+            }
+            lengths.set(state, word.length());
+        }
+
+        int states = goTo.size();
+        int[] transitions = new int[states * columns];
+        int[] patternLength = new int[states];
+        int[] outputLink = new int[states];
+        int[] fail = new int[states];
+        Arrays.fill(outputLink, -1);
+        for (int s = 0; s < states; s++) {
+            patternLength[s] = lengths.get(s);
+        }
+
+        // Enlaces de fallo por BFS y transiciones completas (autómata determinístico)
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < columns; column++) {
+            int child = goTo.get(0)[column];
+            transitions[column] = child;
+            if (child != 0) {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail[state];
+            outputLink[state] = patternLength[failState] > 0 ? failState : outputLink[failState];
+            for (int column = 0; column < columns; column++) {
+                int child = goTo.get(state)[column];
+                if (child != 0) {
+                    fail[child] = transitions[failState * columns + column];
+                    transitions[state * columns + column] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * columns + column] = transitions[failState * columns + column];
+                }
+            }
+        }
+
+        return new AhoCorasickMatcher(charClass, columns, transitions, patternLength, outputLink, words.size());
+    }
+
+    /**
+     * Cantidad de palabras del autómata
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indica si el texto contiene alguna palabra
+     * @param wholeWords Solo cuenta coincidencias que no están dentro de otra palabra
+     */
+    public boolean matches(CharSequence text, boolean wholeWords) {
+        if (size == 0 || text == null) {
+            return false;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + charClass[FOLD[text.charAt(i)]]];
+            if (matchLength(text, state, i, wholeWords) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reemplaza por '*' las palabras encontradas
+     * @return El mismo texto (misma instancia) si no hay coincidencias
+     */
+    public String mask(String text, boolean wholeWords) {
+        if (size == 0 || text == null) {
+            return text;
+        }
+        char[] masked = null;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + charClass[FOLD[text.charAt(i)]]];
+            int length = matchLength(text, state, i, wholeWords);
+            if (length > 0) {
+                if (masked == null) {
+                    masked = text.toCharArray();
+                }
+                Arrays.fill(masked, i - length + 1, i + 1, MASK);
+            }
+        }
+        return masked != null ? new String(masked) : text;
+    }
+
+    /**
+     * Largo de la palabra más larga que termina en la posición "end" (0 si no hay)
+     */
+    private int matchLength(CharSequence text, int state, int end, boolean wholeWords) {
+        int candidate = patternLength[state] > 0 ? state : outputLink[state];
+        while (candidate >= 0) {
+            int length = patternLength[candidate];
+            if (!wholeWords || isBoundary(text, end - length) && isBoundary(text, end + 1)) {
+                return length;
+            }
+            candidate = outputLink[candidate];
+        }
+        return 0;
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    private static String fold(String text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = FOLD[text.charAt(i)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Tabla de normalización por carácter: minúsculas y letras latinas sin diacríticos
+     */
+    private static char[] buildFold() {
+        char[] fold = new char[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char lower = Character.toLowerCase((char) c);
+            if (lower >= 0xC0 && lower < 0x250) {
+                String base = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD);
+                if (!base.isEmpty() && Character.isLetter(base.charAt(0)) && base.charAt(0) < 0x80) {
+                    lower = base.charAt(0);
+                }
+            }
+            fold[c] = lower;
+        }
+        return fold;
+    }
+}
@@ -1,17 +1,24 @@
 package com.uade.tpo.marketplace.service;
 
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
 import com.uade.tpo.marketplace.entity.mongodb.AnalisisHistorico;
 import com.uade.tpo.marketplace.entity.mongodb.Contenido;
 import com.uade.tpo.marketplace.repository.mongodb.AnalisisHistoricoRepository;
 import com.uade.tpo.marketplace.repository.mongodb.ContenidoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,27 +29,29 @@ public class AnalyticsService {
     private final RedisTemplate<String, String> redisTemplate;
     private final ContenidoRepository contenidoRepository;
     private final AnalisisHistoricoRepository analisisHistoricoRepository;
+    private final ViewIngestionService viewIngestionService;
+    private final ContentMetaCache contentMetaCache;
+    private final RedisScripts redisScripts;
+    private final TrendingService trendingService;
+    private final MetricsRollupService metricsRollupService;
 
     private static final String VIEWS_KEY = "ranking:vistas:global";
     private static final String LIKES_KEY = "ranking:likes:global";
-    private static final String CONTENT_VIEWS_PREFIX = "analytics:content:";
     private static final String CREATOR_STATS_PREFIX = "analytics:creator:";
+    private static final String RANKING_CACHE_PREFIX = "ranking:vistas:cache:";
+    private static final long RANKING_CACHE_TTL_SECONDS = 30;
+    private static final int RANKING_SIZE = 50;
+    private static final int RANKING_MARGIN = 10;
 
     /**
      * Registra una nueva vista o interacción en un contenido
+     * Las vistas se agregan en memoria y se guardan en Redis por lotes (ver ViewIngestionService)
      */
     public void registerView(String contentId) {
-        log.info("Registrando vista para contenido {}", contentId);
+        log.debug("Registrando vista para contenido {}", contentId);
         
         try {
-            // Incrementar contador en Redis (Sorted Set para ranking)
-            redisTemplate.opsForZSet().incrementScore(VIEWS_KEY, contentId, 1.0);
-            
-            // Incrementar contador específico del contenido
-            String contentKey = CONTENT_VIEWS_PREFIX + contentId;
-            redisTemplate.opsForValue().increment(contentKey, 1);
-            
-            log.info("Vista registrada exitosamente");
+            viewIngestionService.register(contentId);
         } catch (Exception e) {
             log.error("Error al registrar vista: {}", e.getMessage(), e);
         }
@@ -56,6 +65,14 @@ public class AnalyticsService {
         
         try {
             redisTemplate.opsForZSet().incrementScore(LIKES_KEY, contentId, 1.0);
+            trendingService.recordLike(contentId, 1);
+            metricsRollupService.recordLike(contentId, 1);
+            
+            // Contador agregado del creador
+            String creadorId = contentMetaCache.creatorOf(contentId);
+            if (creadorId != null) {
+                redisTemplate.opsForHash().increment(CREATOR_STATS_PREFIX + creadorId, "likes", 1);
+            }
             log.info("Like registrado exitosamente");
         } catch (Exception e) {
             log.error("Error al registrar like: {}", e.getMessage(), e);
@@ -107,35 +124,66 @@ public class AnalyticsService {
         return metrics;
     }
 
+    /**
+     * Serie temporal de vistas y likes de un contenido
+     * @param granularidad minuto, hora o dia; null = la más gruesa que alcanza para el rango
+     */
+    public Map<String, Object> getContentSeries(String contentId, Instant from, Instant to, String granularidad) {
+        log.info("Obteniendo serie de contenido {} entre {} y {}", contentId, from, to);
+        MetricsRollupService.Tier tier = granularidad != null
+                ? MetricsRollupService.Tier.of(granularidad).orElseThrow(
+                        () -> new IllegalArgumentException("Granularidad inválida: " + granularidad))
+                : null;
+        return metricsRollupService.getSeries(contentId, from, to, tier);
+    }
+
     /**
      * Devuelve métricas del creador (seguidores, interacciones, impacto regional)
+     * Los totales salen de los contadores agregados analytics:creator:{creatorId},
+     * que se actualizan al registrar vistas y likes. La primera consulta de un
+     * creador los inicializa desde los rankings globales (un script en Redis).
+     *
+     * @param detalle Incluir vistas y likes por contenido (ZMSCORE en un único pipeline)
      */
-    public Object getCreatorMetrics(String creatorId) {
+    public Object getCreatorMetrics(String creatorId, boolean detalle) {
         log.info("Obteniendo métricas para creador {}", creatorId);
         
         Map<String, Object> metrics = new HashMap<>();
         
         try {
-            // Obtener todos los contenidos del creador
-            List<Contenido> contenidos = contenidoRepository.findByCreadorId(creatorId);
-            metrics.put("totalContenidos", contenidos.size());
+            String creatorKey = CREATOR_STATS_PREFIX + creatorId;
+            List<Object> counters = redisTemplate.opsForHash()
+                    .multiGet(creatorKey, List.of("vistas", "likes", "inicializado"));
             
-            // Calcular vistas totales y likes totales
-            long vistasTotal = 0;
-            long likesTotal = 0;
+            List<String> contentIds = null;
+            long vistasTotal;
+            long likesTotal;
+            if (counters.get(2) != null) {
+                vistasTotal = asLong(counters.get(0));
+                likesTotal = asLong(counters.get(1));
+            } else {
+                // Primera consulta del creador: sumar sus contenidos en Redis (sin round trips por contenido)
+                contentIds = findContentIds(creatorId);
+                List<?> initialized = redisTemplate.execute(redisScripts.getCreatorCountersInit(),
+                        List.of(creatorKey, VIEWS_KEY, LIKES_KEY), contentIds.toArray());
+                vistasTotal = initialized != null ? asLong(initialized.get(0)) : 0L;
+                likesTotal = initialized != null ? asLong(initialized.get(1)) : 0L;
+            }
             
-            for (Contenido contenido : contenidos) {
-                Double vistas = redisTemplate.opsForZSet().score(VIEWS_KEY, contenido.getId());
-                Double likes = redisTemplate.opsForZSet().score(LIKES_KEY, contenido.getId());
-                
-                vistasTotal += (vistas != null ? vistas.longValue() : 0);
-                likesTotal += (likes != null ? likes.longValue() : 0);
+            if (detalle) {
+                if (contentIds == null) {
+                    contentIds = findContentIds(creatorId);
+                }
+                metrics.put("contenidos", getContentBreakdown(contentIds));
             }
+            long totalContenidos = contentIds != null
+                    ? contentIds.size() : contenidoRepository.countByCreadorId(creatorId);
             
+            metrics.put("totalContenidos", totalContenidos);
             metrics.put("vistasTotal", vistasTotal);
             metrics.put("likesTotal", likesTotal);
             metrics.put("promedioVistasPorContenido", 
-                    contenidos.isEmpty() ? 0 : vistasTotal / contenidos.size());
+                    totalContenidos == 0 ? 0 : vistasTotal / totalContenidos);
             
             // Engagement promedio
             if (vistasTotal > 0) {
@@ -146,7 +194,7 @@ public class AnalyticsService {
             }
             
             log.info("Métricas de creador obtenidas: {} contenidos, {} vistas totales", 
-                    contenidos.size(), vistasTotal);
+                    totalContenidos, vistasTotal);
             
         } catch (Exception e) {
             log.error("Error al obtener métricas de creador: {}", e.getMessage(), e);
@@ -155,8 +203,58 @@ public class AnalyticsService {
         return metrics;
     }
 
+    /**
+     * IDs de los contenidos de un creador (consulta con proyección, solo _id)
+     */
+    private List<String> findContentIds(String creatorId) {
+        return contenidoRepository.findIdsByCreadorId(creatorId).stream()
+                .map(Contenido::getId)
+                .toList();
+    }
+
+    /**
+     * Vistas y likes por contenido: un ZMSCORE por ranking, ambos en un único pipeline
+     */
+    private List<Map<String, Object>> getContentBreakdown(List<String> contentIds) {
+        if (contentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        byte[][] members = contentIds.stream()
+                .map(id -> id.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zMScore(VIEWS_KEY.getBytes(StandardCharsets.UTF_8), members);
+            connection.zSetCommands().zMScore(LIKES_KEY.getBytes(StandardCharsets.UTF_8), members);
+            return null;
+        });
+        List<?> vistas = (List<?>) results.get(0);
+        List<?> likes = (List<?>) results.get(1);
+        
+        List<Map<String, Object>> breakdown = new ArrayList<>(contentIds.size());
+        for (int i = 0; i < contentIds.size(); i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("contenidoId", contentIds.get(i));
+            item.put("vistas", asLong(vistas.get(i)));
+            item.put("likes", asLong(likes.get(i)));
+            breakdown.add(item);
+        }
+        breakdown.sort(Comparator.comparing((Map<String, Object> item) -> (Long) item.get("vistas")).reversed());
+        return breakdown;
+    }
+
+    private static long asLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return value != null ? (long) Double.parseDouble(value.toString()) : 0L;
+    }
+
     /**
      * Genera rankings de popularidad por categoría, región o tipo
+     * Cada filtro tiene su propio ranking en Redis, mantenido al registrar vistas
+     * (ver ViewIngestionService), así el filtro no recorta la página. Con varios
+     * filtros se intersectan los rankings (ZINTERSTORE, cacheado unos segundos).
+     * Los detalles se obtienen con una sola consulta a MongoDB con proyección.
      */
     public List<Object> getRanking(String category, String region, String type) {
         log.info("Generando ranking - categoria: {}, region: {}, tipo: {}", 
@@ -165,43 +263,22 @@ public class AnalyticsService {
         List<Object> ranking = new ArrayList<>();
         
         try {
-            // Obtener top contenidos desde Redis (Sorted Set ordenado por vistas)
-            Set<ZSetOperations.TypedTuple<String>> topContenidos = 
-                    redisTemplate.opsForZSet().reverseRangeWithScores(VIEWS_KEY, 0, 49); // Top 50
-            
-            if (topContenidos != null) {
-                for (ZSetOperations.TypedTuple<String> tuple : topContenidos) {
-                    String contentId = tuple.getValue();
-                    Double score = tuple.getScore();
-                    
-                    // Obtener detalles del contenido desde MongoDB
-                    Optional<Contenido> contenidoOpt = contenidoRepository.findById(contentId);
-                    if (contenidoOpt.isPresent()) {
-                        Contenido contenido = contenidoOpt.get();
-                        
-                        // Aplicar filtros
-                        boolean match = true;
-                        if (category != null && !category.isEmpty()) {
-                            match = category.equals(contenido.getCategoria());
-                        }
-                        if (type != null && !type.isEmpty()) {
-                            match = match && type.equals(contenido.getTipo());
-                        }
-                        // Filtro por región requeriría metadatos adicionales
-                        
-                        if (match) {
-                            Map<String, Object> item = new HashMap<>();
-                            item.put("contenidoId", contentId);
-                            item.put("titulo", contenido.getTitulo());
-                            item.put("tipo", contenido.getTipo());
-                            item.put("categoria", contenido.getCategoria());
-                            item.put("vistas", score != null ? score.longValue() : 0);
-                            ranking.add(item);
-                        }
-                    }
-                }
+            List<String> keys = new ArrayList<>();
+            if (category != null && !category.isEmpty()) {
+                keys.add(ViewIngestionService.CATEGORY_RANKING_PREFIX + category);
+            }
+            if (type != null && !type.isEmpty()) {
+                keys.add(ViewIngestionService.TYPE_RANKING_PREFIX + type);
+            }
+            if (region != null && !region.isEmpty()) {
+                keys.add(ViewIngestionService.REGION_RANKING_PREFIX + region);
             }
             
+            // Se piden algunos extra por si hay contenidos eliminados en el ranking
+            Set<ZSetOperations.TypedTuple<String>> topContenidos = readRanking(keys, RANKING_SIZE + RANKING_MARGIN);
+            ranking.addAll(hydrate(topContenidos, RANKING_SIZE, "vistas",
+                    score -> score != null ? score.longValue() : 0L));
+            
             log.info("Ranking generado con {} elementos", ranking.size());
             
         } catch (Exception e) {
@@ -211,6 +288,101 @@ public class AnalyticsService {
         return ranking;
     }
 
+    /**
+     * Contenidos en tendencia de la ventana indicada (1h, 24h o 7d)
+     * Lee el resultado precalculado por TrendingService; el puntaje es la
+     * actividad ponderada con decaimiento temporal
+     */
+    public List<Object> getTrending(String window, int limit) {
+        log.info("Obteniendo tendencias - ventana: {}", window);
+        
+        List<Object> trending = new ArrayList<>();
+        
+        try {
+            int size = Math.min(Math.max(limit, 1), RANKING_SIZE);
+            Set<ZSetOperations.TypedTuple<String>> top = trendingService.top(window, size + RANKING_MARGIN);
+            trending.addAll(hydrate(top, size, "puntaje",
+                    score -> score != null ? Math.round(score * 100) / 100.0 : 0.0));
+        } catch (Exception e) {
+            log.error("Error al obtener tendencias: {}", e.getMessage(), e);
+        }
+        
+        return trending;
+    }
+
+    /**
+     * Agrega a un top de Redis los datos de cada contenido con una sola consulta
+     * a MongoDB (proyección); omite los contenidos eliminados
+     */
+    private List<Map<String, Object>> hydrate(Set<ZSetOperations.TypedTuple<String>> top, int size,
+                                              String scoreField, Function<Double, Object> scoreValue) {
+        if (top == null || top.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> ids = top.stream().map(ZSetOperations.TypedTuple::getValue).toList();
+        Map<String, Contenido> contenidos = new HashMap<>();
+        for (Contenido contenido : contenidoRepository.findSummariesByIdIn(ids)) {
+            contenidos.put(contenido.getId(), contenido);
+        }
+        
+        List<Map<String, Object>> items = new ArrayList<>(size);
+        for (ZSetOperations.TypedTuple<String> tuple : top) {
+            Contenido contenido = contenidos.get(tuple.getValue());
+            if (contenido == null) {
+                continue;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("contenidoId", tuple.getValue());
+            item.put("titulo", contenido.getTitulo());
+            item.put("tipo", contenido.getTipo());
+            item.put("categoria", contenido.getCategoria());
+            item.put(scoreField, scoreValue.apply(tuple.getScore()));
+            items.add(item);
+            if (items.size() == size) {
+                break;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Top del ranking global, de una dimensión o de la intersección de varias
+     * La intersección se guarda con TTL: mientras existe se lee directamente y,
+     * si venció, se calcula y lee en un único pipeline (una intersección vacía no
+     * crea la clave, así que se vuelve a calcular en cada consulta)
+     */
+    @SuppressWarnings("unchecked")
+    private Set<ZSetOperations.TypedTuple<String>> readRanking(List<String> keys, int size) {
+        if (keys.size() <= 1) {
+            String key = keys.isEmpty() ? VIEWS_KEY : keys.get(0);
+            return redisTemplate.opsForZSet().reverseRangeWithScores(key, 0, size - 1);
+        }
+        
+        String cacheKey = RANKING_CACHE_PREFIX + String.join("|", keys);
+        List<Object> cached = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+            connection.keyCommands().exists(key);
+            connection.zSetCommands().zRevRangeWithScores(key, 0, size - 1);
+            return null;
+        });
+        if (Boolean.TRUE.equals(cached.get(0))) {
+            return (Set<ZSetOperations.TypedTuple<String>>) cached.get(1);
+        }
+        
+        byte[] destination = cacheKey.getBytes(StandardCharsets.UTF_8);
+        byte[][] sources = keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // Todas las dimensiones tienen el mismo puntaje por contenido (sus vistas)
+            connection.zSetCommands().zInterStore(destination, Aggregate.MAX,
+                    Weights.fromSetCount(sources.length), sources);
+            connection.keyCommands().expire(destination, RANKING_CACHE_TTL_SECONDS);
+            connection.zSetCommands().zRevRangeWithScores(destination, 0, size - 1);
+            return null;
+        });
+        return (Set<ZSetOperations.TypedTuple<String>>) results.get(2);
+    }
+
     /**
      * Mide el impacto social y cultural por región
      */
@@ -0,0 +1,129 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Filtro de palabras bloqueadas del chat en vivo
+ *
+ * La lista se guarda en Redis (live:moderation:blocklist) y cada nodo la
+ * compila a un AhoCorasickMatcher en memoria. Al reemplazar la lista se
+ * incrementa live:moderation:version; los nodos la consultan cada
+ * "live.moderation.reload-interval-ms" y recompilan sin reiniciar. Si la lista
+ * no existe, se inicializa con "live.moderation.blocklist".
+ *
+ * Acción ("live.moderation.action"): MASK reemplaza las palabras por '*',
+ * REJECT descarta el mensaje.
+ */
+@Slf4j
+@Component
+@Order(1)
+public class BlocklistChatFilter implements ChatModerationFilter {
+
+    public enum Action { MASK, REJECT }
+
+    private static final String BLOCKLIST_KEY = "live:moderation:blocklist";
+    private static final String VERSION_KEY = "live:moderation:version";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScripts redisScripts;
+    private final List<String> initialWords;
+    private final Action action;
+    private final boolean wholeWords;
+
+    private volatile AhoCorasickMatcher matcher;
+    private volatile String loadedVersion;
+
+    public BlocklistChatFilter(RedisTemplate<String, String> redisTemplate,
+                               RedisScripts redisScripts,
+                               @Value("${live.moderation.blocklist:}") List<String> initialWords,
+                               @Value("${live.moderation.action:MASK}") Action action,
+                               @Value("${live.moderation.whole-words:true}") boolean wholeWords) {
+        this.redisTemplate = redisTemplate;
+        this.redisScripts = redisScripts;
+        this.initialWords = initialWords;
+        this.action = action;
+        this.wholeWords = wholeWords;
+        // Hasta leer Redis se usa la lista configurada
+        this.matcher = AhoCorasickMatcher.compile(initialWords);
+    }
+
+    @Override
+    public ModerationResult check(String liveId, String userId, String text) {
+        AhoCorasickMatcher current = matcher;
+        if (action == Action.REJECT) {
+            return current.matches(text, wholeWords)
+                    ? ModerationResult.reject("BLOCKED_WORD")
+                    : ModerationResult.allow(text);
+        }
+        String masked = current.mask(text, wholeWords);
+        return masked == text ? ModerationResult.allow(text) : ModerationResult.mask(masked, "BLOCKED_WORD");
+    }
+
+    /**
+     * Palabras bloqueadas actuales (desde Redis)
+     */
+    public Set<String> getWords() {
+        Set<String> words = redisTemplate.opsForSet().members(BLOCKLIST_KEY);
+        return words != null ? new TreeSet<>(words) : Collections.emptySet();
+    }
+
+    /**
+     * Reemplaza la lista de palabras para todos los nodos
+     * Este nodo recompila en el momento; el resto en su próxima consulta de versión
+     */
+    public void replaceWords(Collection<String> words) {
+        List<String> cleaned = words.stream()
+                .filter(Objects::nonNull)
+                .map(String::strip)
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toList();
+        redisTemplate.execute(redisScripts.getModerationBlocklistSet(),
+                List.of(BLOCKLIST_KEY, VERSION_KEY), cleaned.toArray());
+        reload();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(VERSION_KEY)) && !initialWords.isEmpty()) {
+                replaceWords(initialWords);
+                log.info("Lista de moderación inicializada con {} palabras", initialWords.size());
+                return;
+            }
+            reload();
+        } catch (Exception e) {
+            log.warn("No se pudo cargar la lista de moderación desde Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recompila el autómata si la versión de la lista cambió
+     */
+    @Scheduled(initialDelayString = "${live.moderation.reload-interval-ms:5000}",
+            fixedDelayString = "${live.moderation.reload-interval-ms:5000}")
+    public void reload() {
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY);
+            if (version == null || version.equals(loadedVersion)) {
+                return;
+            }
+            Set<String> words = redisTemplate.opsForSet().members(BLOCKLIST_KEY);
+            matcher = AhoCorasickMatcher.compile(words != null ? words : Collections.emptySet());
+            loadedVersion = version;
+            log.info("Lista de moderación versión {} compilada ({} palabras)", version, matcher.size());
+        } catch (Exception e) {
+            log.error("Error al recargar la lista de moderación: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.uade.tpo.marketplace.service;
+
+/**
+ * Etapa de moderación del chat en vivo
+ *
+ * ChatModerationService aplica todos los filtros registrados como beans, en el
+ * orden de @Order, antes de guardar y difundir cada mensaje. Cada filtro recibe
+ * el texto que dejó el anterior (por ejemplo, ya enmascarado).
+ */
+public interface ChatModerationFilter {
+
+    ModerationResult check(String liveId, String userId, String text);
+
+    enum Decision { ALLOW, MASK, REJECT }
+
+    /**
+     * Resultado de un filtro: el texto a usar (ALLOW / MASK) o el motivo del rechazo
+     */
+    record ModerationResult(Decision decision, String text, String reason) {
+
+        public static ModerationResult allow(String text) {
+            return new ModerationResult(Decision.ALLOW, text, null);
+        }
+
+        public static ModerationResult mask(String text, String reason) {
+            return new ModerationResult(Decision.MASK, text, reason);
+        }
+
+        public static ModerationResult reject(String reason) {
+            return new ModerationResult(Decision.REJECT, null, reason);
+        }
+
+        public boolean isRejected() {
+            return decision == Decision.REJECT;
+        }
+    }
+}
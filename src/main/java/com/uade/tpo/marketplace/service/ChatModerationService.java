@@ -0,0 +1,43 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.service.ChatModerationFilter.ModerationResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Moderación del chat en vivo antes de guardar y difundir cada mensaje
+ *
+ * Aplica en orden los ChatModerationFilter registrados (silencios, palabras
+ * bloqueadas, ...). Para agregar una etapa basta con declarar otro bean.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatModerationService {
+
+    private final List<ChatModerationFilter> filters;
+
+    /**
+     * @return El resultado final: texto a publicar (ALLOW / MASK) o rechazo con motivo
+     */
+    public ModerationResult moderate(String liveId, String userId, String text) {
+        if (text == null || text.isBlank()) {
+            return ModerationResult.reject("EMPTY");
+        }
+        ModerationResult result = ModerationResult.allow(text);
+        for (ChatModerationFilter filter : filters) {
+            ModerationResult next = filter.check(liveId, userId, result.text());
+            if (next.isRejected()) {
+                log.info("Mensaje de {} en live {} rechazado: {}", userId, liveId, next.reason());
+                return next;
+            }
+            if (next.decision() == ChatModerationFilter.Decision.MASK) {
+                result = next;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+package com.uade.tpo.marketplace.service;
+
+import java.util.*;
+
+/**
+ * Anillo de hash consistente para asignar cada clave (liveId) a un nodo
+ *
+ * Cada nodo ocupa "virtualNodes" posiciones del anillo para repartir la carga;
+ * al agregar o quitar un nodo solo cambia de dueño la fracción de claves que
+ * le correspondían. Es inmutable: ante un cambio de miembros se crea otro.
+ */
+public final class ConsistentHashRing {
+
+    private final long[] points; // Posiciones ordenadas
+    private final String[] owners; // Nodo de cada posición
+    private final Set<String> nodes;
+
+    private ConsistentHashRing(long[] points, String[] owners, Set<String> nodes) {
+        this.points = points;
+        this.owners = owners;
+        this.nodes = nodes;
+    }
+
+    public static ConsistentHashRing of(Collection<String> nodes, int virtualNodes) {
+        int replicas = Math.max(1, virtualNodes);
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : new TreeSet<>(nodes)) {
+            for (int i = 0; i < replicas; i++) {
+                // En una colisión (muy improbable) gana el primer nodo en orden alfabético
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        long[] points = new long[ring.size()];
+        String[] owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> entry : ring.entrySet()) {
+            points[i] = entry.getKey();
+            owners[i++] = entry.getValue();
+        }
+        return new ConsistentHashRing(points, owners, Set.copyOf(nodes));
+    }
+
+    /**
+     * Nodo dueño de la clave: el de la primera posición del anillo igual o mayor a su hash
+     * @return null si el anillo no tiene nodos
+     */
+    public String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * FNV-1a de 64 bits con mezcla final (splitmix64) para repartir bien claves parecidas
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h;
+    }
+}
@@ -0,0 +1,152 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.entity.mongodb.Contenido;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Cache en memoria de los metadatos de contenidos usados por analytics
+ * (creador, categoría, tipo y región)
+ *
+ * Evita una consulta a MongoDB por vista o like: los IDs que faltan se buscan
+ * todos juntos en una sola consulta con proyección ($in sobre _id, solo los
+ * campos necesarios). Los contenidos inexistentes también se guardan (con
+ * campos nulos) para no volver a buscarlos. El tamaño está acotado por
+ * "analytics.content-meta.max-size" (se descartan los menos usados).
+ *
+ * Al actualizar o eliminar un contenido la invalidación llega a todos los nodos
+ * por el canal "analytics:content-meta:evict"; mientras tanto otro nodo puede
+ * aplicar un último flush con los metadatos anteriores.
+ */
+@Slf4j
+@Component
+public class ContentMetaCache implements MessageListener {
+
+    private static final String EVICT_CHANNEL = "analytics:content-meta:evict";
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Map<String, ContentMeta> cache;
+
+    public ContentMetaCache(MongoTemplate mongoTemplate,
+                            RedisTemplate<String, String> redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${analytics.content-meta.max-size:100000}") int maxSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        int limit = Math.max(1, maxSize);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ContentMeta> eldest) {
+                return size() > limit;
+            }
+        });
+    }
+
+    /**
+     * Metadatos de un contenido; campos nulos si no existe
+     * La región sale de metadatosEnriquecidos.region (si está informada)
+     */
+    public record ContentMeta(String creadorId, String categoria, String tipo, String region) {
+        static final ContentMeta MISSING = new ContentMeta(null, null, null, null);
+
+        public static ContentMeta of(Contenido contenido) {
+            Object region = contenido.getMetadatosEnriquecidos() != null
+                    ? contenido.getMetadatosEnriquecidos().get("region") : null;
+            return new ContentMeta(contenido.getCreadorId(), contenido.getCategoria(),
+                    contenido.getTipo(), region != null ? region.toString() : null);
+        }
+    }
+
+    public ContentMeta get(String contentId) {
+        return resolve(List.of(contentId)).get(contentId);
+    }
+
+    /**
+     * Creador de un contenido (null si no existe)
+     */
+    public String creatorOf(String contentId) {
+        return get(contentId).creadorId();
+    }
+
+    /**
+     * Metadatos de varios contenidos: una sola consulta a MongoDB para los que no están en cache
+     * Si MongoDB falla, los faltantes se devuelven sin metadatos (y no se guardan)
+     */
+    public Map<String, ContentMeta> resolve(Collection<String> contentIds) {
+        Map<String, ContentMeta> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String contentId : contentIds) {
+            ContentMeta meta = cache.get(contentId);
+            if (meta != null) {
+                result.put(contentId, meta);
+            } else {
+                missing.add(contentId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        try {
+            Query query = Query.query(Criteria.where("_id").in(missing));
+            query.fields().include("creadorId", "categoria", "tipo", "metadatosEnriquecidos.region");
+            for (Contenido contenido : mongoTemplate.find(query, Contenido.class)) {
+                ContentMeta meta = ContentMeta.of(contenido);
+                cache.put(contenido.getId(), meta);
+                result.put(contenido.getId(), meta);
+            }
+            for (String contentId : missing) {
+                if (!result.containsKey(contentId)) {
+                    cache.put(contentId, ContentMeta.MISSING);
+                    result.put(contentId, ContentMeta.MISSING);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error al obtener metadatos de {} contenidos: {}", missing.size(), e.getMessage(), e);
+            missing.forEach(contentId -> result.putIfAbsent(contentId, ContentMeta.MISSING));
+        }
+        return result;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * Descarta los metadatos de un contenido (al actualizarlo o eliminarlo) en
+     * este nodo y lo avisa al resto del cluster
+     */
+    public void evict(String contentId) {
+        cache.remove(contentId);
+        try {
+            redisTemplate.convertAndSend(EVICT_CHANNEL, contentId);
+        } catch (Exception e) {
+            log.error("Error al invalidar metadatos de {} en el cluster: {}", contentId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Invalidación recibida de otro nodo (o de este mismo)
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -24,6 +24,8 @@ public class ContentService {
     private final ContenidoRepository contenidoRepository;
     private final OutboxEventRepository outboxEventRepository; // Inyectar repo Outbox
     private final LogService logService;
+    private final ViewIngestionService viewIngestionService;
+    private final ContentMetaCache contentMetaCache;
 
     /**
      * Guarda un nuevo contenido.
@@ -81,6 +83,7 @@ public class ContentService {
     public Contenido updateContent(String id, Contenido updatedContent) {
         return contenidoRepository.findById(id)
                 .map(existingContent -> {
+                    ContentMetaCache.ContentMeta previousMeta = ContentMetaCache.ContentMeta.of(existingContent);
                     // Actualizar solo los campos que no son null
                     if (updatedContent.getTitulo() != null) {
                         existingContent.setTitulo(updatedContent.getTitulo());
@@ -101,7 +104,16 @@ public class ContentService {
                     if (updatedContent.getEtiquetas() != null) {
                         existingContent.setEtiquetas(updatedContent.getEtiquetas());
                     }
-                    return contenidoRepository.save(existingContent);
+                    Contenido saved = contenidoRepository.save(existingContent);
+                    // Categoría, tipo o región pueden haber cambiado: mover el puntaje
+                    // entre rankings por dimensión e invalidar la cache en todos los nodos
+                    try {
+                        viewIngestionService.moveDimensions(id, previousMeta, ContentMetaCache.ContentMeta.of(saved));
+                    } catch (Exception e) {
+                        log.error("Error al mover el contenido {} entre rankings: {}", id, e.getMessage(), e);
+                    }
+                    contentMetaCache.evict(id);
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Contenido no encontrado con id: " + id));
     }
@@ -118,6 +130,14 @@ public class ContentService {
         contenidoRepository.deleteById(id);
         log.info("Contenido {} eliminado de MongoDB.", id);
 
+        // Quitar de los rankings y corregir los contadores del creador
+        try {
+            viewIngestionService.removeContent(id, ContentMetaCache.ContentMeta.of(contentOptional.get()));
+        } catch (Exception e) {
+            log.error("Error al quitar el contenido {} de los rankings: {}", id, e.getMessage(), e);
+        }
+        contentMetaCache.evict(id);
+
 
         // --- INICIO LÓGICA OUTBOX ---
         // Generar evento para eliminar nodo en Neo4j
@@ -181,11 +201,14 @@ public class ContentService {
                 .toList();
     }
 
-    // Incrementar contador de vistas (placeholder)
-    public void incrementViewCount(String contentId) {
-        // Lógica para incrementar vistas (ej. con Redis o en un campo del documento)
-        // String key = "view_count::" + contentId;
-        // redisTemplate.opsForValue().increment(key);
+    /**
+     * Registra una vista del contenido en analytics (ranking y contador)
+     * Solo cuenta una vista por espectador dentro de la ventana de deduplicación
+     * @param viewer Identificador del espectador (usuario, sesión o dirección del cliente)
+     * @return true si la vista contó
+     */
+    public boolean incrementViewCount(String contentId, String viewer) {
+        return viewIngestionService.registerUnique(contentId, viewer);
     }
 
     // --- MÉTODOS MOCK ELIMINADOS ---
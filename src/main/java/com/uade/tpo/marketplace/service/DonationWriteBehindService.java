@@ -0,0 +1,275 @@
+package com.uade.tpo.marketplace.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.mongodb.Transaccion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Persistencia diferida (write-behind) de donaciones en vivo
+ *
+ * LiveService.donate solo agrega la donación al stream "live:donations:queue"
+ * (confirmación rápida en Redis). Este servicio consume el stream con un consumer
+ * group y guarda las donaciones en la colección "transacciones" mediante inserts
+ * masivos. El ID de donación se usa como _id de la Transaccion, por lo que un
+ * reintento de un lote ya guardado no genera duplicados.
+ *
+ * Las entradas que fallan quedan pendientes (sin ACK) y se reclaman tras
+ * "retry-idle-ms", también las de nodos caídos. Tras "max-retries" entregas se
+ * mueven al stream "live:donations:dlq" para revisión manual. Si MongoDB no
+ * responde, el ciclo se saltea (sin leer ni reclamar) hasta que vuelva a responder
+ * un ping: una caída de MongoDB no suma entregas ni manda donaciones a la DLQ.
+ *
+ * La cola no tiene largo máximo: al final de cada ciclo se recorta solo detrás
+ * del consumer group más atrasado (este y el de LiveArchiveService), así nunca
+ * se borra una donación sin guardar o sin archivar.
+ */
+@Slf4j
+@Service
+public class DonationWriteBehindService {
+
+    public static final String QUEUE_KEY = "live:donations:queue";
+    private static final String DEAD_LETTER_KEY = "live:donations:dlq";
+    private static final String GROUP = "donations-writer";
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final RedisScripts redisScripts;
+    private final String consumerName;
+    private final int batchSize;
+    private final Duration retryIdle;
+    private final int maxRetries;
+
+    private volatile boolean groupReady = false;
+    private volatile boolean mongoUnavailable = false;
+
+    public DonationWriteBehindService(RedisTemplate<String, String> redisTemplate,
+                                      MongoTemplate mongoTemplate,
+                                      RedisScripts redisScripts,
+                                      LiveEventBus liveEventBus,
+                                      @Value("${live.donations.batch-size:500}") int batchSize,
+                                      @Value("${live.donations.retry-idle-ms:30000}") long retryIdleMs,
+                                      @Value("${live.donations.max-retries:5}") int maxRetries) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.redisScripts = redisScripts;
+        this.consumerName = liveEventBus.getNodeId();
+        this.batchSize = batchSize;
+        this.retryIdle = Duration.ofMillis(retryIdleMs);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Ciclo de persistencia: primero reintenta las entradas pendientes vencidas
+     * y luego procesa las donaciones nuevas del stream
+     */
+    @Scheduled(fixedDelayString = "${live.donations.flush-interval-ms:500}")
+    public void flush() {
+        try {
+            if (!ensureGroup() || !mongoAvailable()) {
+                return;
+            }
+            StreamOperations<String, String, String> streamOps = redisTemplate.opsForStream();
+
+            List<MapRecord<String, String, String>> retries = claimStalePending(streamOps);
+            if (!retries.isEmpty()) {
+                persist(streamOps, retries);
+            }
+
+            if (!mongoUnavailable) {
+                List<MapRecord<String, String, String>> records = streamOps.read(
+                        Consumer.from(GROUP, consumerName),
+                        StreamReadOptions.empty().count(batchSize),
+                        StreamOffset.create(QUEUE_KEY, ReadOffset.lastConsumed()));
+                if (records != null && !records.isEmpty()) {
+                    persist(streamOps, records);
+                }
+            }
+            trimQueue();
+        } catch (Exception e) {
+            log.error("Error en la persistencia diferida de donaciones: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inserta un lote de donaciones y confirma (XACK) las que quedaron guardadas
+     * Los duplicados (_id ya existente) cuentan como guardados
+     */
+    private void persist(StreamOperations<String, String, String> streamOps,
+                         List<MapRecord<String, String, String>> records) {
+        // Cada registro se convierte por separado: uno malformado va a la cola de
+        // errores sin frenar el resto del lote
+        List<MapRecord<String, String, String>> valid = new ArrayList<>(records.size());
+        List<Transaccion> transacciones = new ArrayList<>(records.size());
+        for (MapRecord<String, String, String> record : records) {
+            try {
+                transacciones.add(toTransaccion(record.getValue()));
+                valid.add(record);
+            } catch (Exception e) {
+                log.error("Donación {} malformada, se mueve a {}: {}", record.getId(), DEAD_LETTER_KEY, e.getMessage());
+                streamOps.add(DEAD_LETTER_KEY, record.getValue());
+                streamOps.acknowledge(QUEUE_KEY, GROUP, record.getId());
+            }
+        }
+        if (transacciones.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transaccion.class)
+                    .insert(transacciones)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    failed.add(error.getIndex());
+                }
+            }
+            log.warn("Lote de donaciones con {} errores (se reintentarán): {}", failed.size(), e.getMessage());
+        } catch (DataAccessResourceFailureException e) {
+            // Sin conexión: no se vuelve a leer ni reclamar hasta que MongoDB responda
+            mongoUnavailable = true;
+            log.error("MongoDB no disponible, se pausa la persistencia de {} donaciones: {}",
+                    valid.size(), e.getMessage());
+            return;
+        } catch (Exception e) {
+            log.error("Error al guardar lote de {} donaciones (se reintentará): {}", valid.size(), e.getMessage());
+            return;
+        }
+
+        List<RecordId> saved = new ArrayList<>(valid.size());
+        for (int i = 0; i < valid.size(); i++) {
+            if (!failed.contains(i)) {
+                saved.add(valid.get(i).getId());
+            }
+        }
+        if (!saved.isEmpty()) {
+            streamOps.acknowledge(QUEUE_KEY, GROUP, saved.toArray(new RecordId[0]));
+            log.info("{} donaciones persistidas en MongoDB", saved.size());
+        }
+    }
+
+    /**
+     * Reclama para este nodo las entradas pendientes sin ACK durante más de "retry-idle-ms"
+     * (fallos previos o nodos caídos). Las que superaron "max-retries" van a la cola de errores.
+     */
+    private List<MapRecord<String, String, String>> claimStalePending(
+            StreamOperations<String, String, String> streamOps) {
+        PendingMessages pending = streamOps.pending(QUEUE_KEY, GROUP, Range.unbounded(), batchSize);
+        if (pending == null || pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<RecordId> toClaim = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(retryIdle) < 0) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() > maxRetries) {
+                deadLetter(streamOps, message.getId());
+            } else {
+                toClaim.add(message.getId());
+            }
+        }
+        if (toClaim.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<MapRecord<String, String, String>> claimed = streamOps.claim(QUEUE_KEY, GROUP, consumerName,
+                retryIdle, toClaim.toArray(new RecordId[0]));
+        return claimed != null ? claimed : Collections.emptyList();
+    }
+
+    /**
+     * Tras un fallo de conexión, comprueba con un ping si MongoDB volvió
+     */
+    private boolean mongoAvailable() {
+        if (!mongoUnavailable) {
+            return true;
+        }
+        try {
+            mongoTemplate.executeCommand("{ ping: 1 }");
+            mongoUnavailable = false;
+            log.info("MongoDB disponible, se reanuda la persistencia de donaciones");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Borra de la cola las donaciones ya confirmadas por todos los consumer groups
+     */
+    private void trimQueue() {
+        try {
+            Long trimmed = redisTemplate.execute(redisScripts.getDonationQueueTrim(), List.of(QUEUE_KEY),
+                    GROUP, LiveArchiveService.DONATIONS_GROUP);
+            if (trimmed != null && trimmed > 0) {
+                log.debug("{} donaciones confirmadas borradas de {}", trimmed, QUEUE_KEY);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo recortar {}: {}", QUEUE_KEY, e.getMessage());
+        }
+    }
+
+    private void deadLetter(StreamOperations<String, String, String> streamOps, RecordId id) {
+        List<MapRecord<String, String, String>> records = streamOps.range(QUEUE_KEY,
+                Range.closed(id.getValue(), id.getValue()));
+        if (records != null && !records.isEmpty()) {
+            streamOps.add(DEAD_LETTER_KEY, records.get(0).getValue());
+        }
+        streamOps.acknowledge(QUEUE_KEY, GROUP, id);
+        log.error("Donación {} movida a {} tras superar {} reintentos", id, DEAD_LETTER_KEY, maxRetries);
+    }
+
+    private boolean ensureGroup() {
+        if (groupReady) {
+            return true;
+        }
+        try {
+            redisTemplate.opsForStream().createGroup(QUEUE_KEY, ReadOffset.from("0"), GROUP);
+            log.info("Consumer group {} creado en {}", GROUP, QUEUE_KEY);
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && (e.getCause() == null || !String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                log.warn("No se pudo crear el consumer group {}: {}", GROUP, e.getMessage());
+                return false;
+            }
+        }
+        groupReady = true;
+        return true;
+    }
+
+    private static Transaccion toTransaccion(Map<String, String> fields) {
+        long ts = Long.parseLong(fields.get("ts"));
+        return Transaccion.builder()
+                .id(fields.get("id"))
+                .usuarioId(fields.get("donorId"))
+                .creadorId(fields.get("creatorId"))
+                .transmisionId(fields.get("liveId"))
+                .tipo("donacion")
+                .monto(Double.parseDouble(fields.get("amount")))
+                .fecha(LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneId.systemDefault()))
+                .metodoPago("online")
+                .build();
+    }
+}
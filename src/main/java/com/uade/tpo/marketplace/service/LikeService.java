@@ -26,10 +26,14 @@ public class LikeService {
     private final RedisTemplate<String, String> redisTemplate;
     // Usaremos Neo4jClient en lugar de Neo4jTemplate (más flexible)
     private final Neo4jClient neo4jClient; 
+    private final ContentMetaCache contentMetaCache;
+    private final TrendingService trendingService;
+    private final MetricsRollupService metricsRollupService;
 
     private static final String LIKES_COUNTER_PREFIX = "likes:count:";
     private static final String LIKES_RANKING_KEY = "ranking:likes:global";
     private static final String USER_LIKES_PREFIX = "user:likes:";
+    private static final String CREATOR_STATS_PREFIX = "analytics:creator:";
 
     /**
      * Registra un like de un usuario en un contenido.
@@ -56,7 +60,11 @@ public class LikeService {
                 redisTemplate.opsForValue().increment(likesKey, 1);
                 // 2. Actualizar ranking
                 redisTemplate.opsForZSet().incrementScore(LIKES_RANKING_KEY, contenidoId, 1.0);
-                // 3. Crear relación GUSTA en Neo4j (best-effort)
+                // 3. Contador agregado del creador, tendencias y series temporales
+                incrementCreatorLikes(contenidoId, 1);
+                trendingService.recordLike(contenidoId, 1);
+                metricsRollupService.recordLike(contenidoId, 1);
+                // 4. Crear relación GUSTA en Neo4j (best-effort)
                 createGustaRelationInNeo4j(usuarioId, contenidoId);
 
                 log.info("Like registrado exitosamente en Redis (y Neo4j intentado)");
@@ -103,7 +111,11 @@ public class LikeService {
                 }
                 // 2. Actualizar ranking
                 redisTemplate.opsForZSet().incrementScore(LIKES_RANKING_KEY, contenidoId, -1.0);
-                // 3. Eliminar relación GUSTA en Neo4j (best-effort)
+                // 3. Contador agregado del creador, tendencias y series temporales
+                incrementCreatorLikes(contenidoId, -1);
+                trendingService.recordLike(contenidoId, -1);
+                metricsRollupService.recordLike(contenidoId, -1);
+                // 4. Eliminar relación GUSTA en Neo4j (best-effort)
                 deleteGustaRelationInNeo4j(usuarioId, contenidoId);
 
                 log.info("Like eliminado exitosamente de Redis (y Neo4j intentado)");
@@ -120,6 +132,16 @@ public class LikeService {
         }
     }
 
+    /**
+     * Actualiza el contador de likes agregado del creador (analytics:creator:{creatorId})
+     */
+    private void incrementCreatorLikes(String contenidoId, long delta) {
+        String creadorId = contentMetaCache.creatorOf(contenidoId);
+        if (creadorId != null) {
+            redisTemplate.opsForHash().increment(CREATOR_STATS_PREFIX + creadorId, "likes", delta);
+        }
+    }
+
     /** Obtiene el número total de likes (desde Redis) */
     public long getLikesCount(String contenidoId) {
         try {
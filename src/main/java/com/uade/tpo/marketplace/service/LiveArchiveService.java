@@ -0,0 +1,503 @@
+package com.uade.tpo.marketplace.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.mongodb.Contenido;
+import com.uade.tpo.marketplace.entity.mongodb.FragmentoTransmision;
+import com.uade.tpo.marketplace.entity.mongodb.FragmentoTransmision.Evento;
+import com.uade.tpo.marketplace.entity.mongodb.Transmision;
+import com.uade.tpo.marketplace.repository.mongodb.ContenidoRepository;
+import com.uade.tpo.marketplace.repository.mongodb.FragmentoTransmisionRepository;
+import com.uade.tpo.marketplace.repository.mongodb.TransmisionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo de transmisiones en vivo y reproducción sincronizada
+ *
+ * Mientras la transmisión está activa, cada "live.archive.interval-ms" se drenan
+ * los eventos nuevos hacia la colección "transmision_fragmentos":
+ * - Chat: stream live:chat:{liveId} desde el último ID archivado
+ * - Preguntas: IDs de la cola de Q&A posteriores a la última archivada
+ * - Donaciones: consumer group propio sobre live:donations:queue
+ *
+ * Los eventos se agrupan en ventanas de "live.archive.bucket-ms" y cada ventana
+ * es un único fragmento GZIP ({liveId}:{bucket}): los eventos de cada ciclo se
+ * agregan al fragmento existente de su ventana. Los cursores (live:archive:cursor)
+ * solo avanzan después de guardar y los eventos se identifican por tipo e ID, por
+ * lo que un reintento no duplica eventos.
+ *
+ * Las donaciones pendientes del grupo de archivo (de cualquier nodo que tuvo el
+ * lock) se reclaman en cada ciclo y se leen junto con las nuevas: una transmisión
+ * que no se puede archivar no frena las donaciones del resto.
+ *
+ * El stream de chat se recorta acá (XTRIM MINID) y no al escribir: solo se
+ * borran entradas ya archivadas y anteriores a "live.archive.chat-retention-ms",
+ * que quedan para la carga inicial y el catch-up de los clientes. Si aun así
+ * faltan entradas posteriores al cursor (tope de seguridad del stream), se
+ * registra el hueco en el log.
+ */
+@Slf4j
+@Service
+public class LiveArchiveService {
+
+    private static final String CHAT_PREFIX = "live:chat:";
+    private static final String CURSOR_KEY = "live:archive:cursor";
+    private static final String LOCK_KEY = "live:archive:lock";
+    private static final String FINAL_KEY = "live:archive:finales";
+    public static final String DONATIONS_GROUP = "donations-archiver";
+    private static final long MAX_REPLAY_WINDOW_MS = 10 * 60 * 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final FragmentoTransmisionRepository fragmentoRepository;
+    private final TransmisionRepository transmisionRepository;
+    private final ContenidoRepository contenidoRepository;
+    private final LivePresenceService livePresenceService;
+    private final LiveQuestionService liveQuestionService;
+    private final RedisScripts redisScripts;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final long bucketMs;
+    private final int batchSize;
+    private final Duration lockTtl;
+    private final long chatRetentionMs;
+
+    private volatile boolean groupReady = false;
+
+    public LiveArchiveService(RedisTemplate<String, String> redisTemplate,
+                              MongoTemplate mongoTemplate,
+                              FragmentoTransmisionRepository fragmentoRepository,
+                              TransmisionRepository transmisionRepository,
+                              ContenidoRepository contenidoRepository,
+                              LivePresenceService livePresenceService,
+                              LiveQuestionService liveQuestionService,
+                              RedisScripts redisScripts,
+                              LiveEventBus liveEventBus,
+                              ObjectMapper objectMapper,
+                              @Value("${live.archive.bucket-ms:60000}") long bucketMs,
+                              @Value("${live.archive.batch-size:1000}") int batchSize,
+                              @Value("${live.archive.interval-ms:5000}") long intervalMs,
+                              @Value("${live.archive.chat-retention-ms:300000}") long chatRetentionMs) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.fragmentoRepository = fragmentoRepository;
+        this.transmisionRepository = transmisionRepository;
+        this.contenidoRepository = contenidoRepository;
+        this.livePresenceService = livePresenceService;
+        this.liveQuestionService = liveQuestionService;
+        this.redisScripts = redisScripts;
+        this.objectMapper = objectMapper;
+        this.nodeId = liveEventBus.getNodeId();
+        this.bucketMs = Math.max(bucketMs, 1000);
+        this.batchSize = batchSize;
+        this.lockTtl = Duration.ofMillis(Math.max(intervalMs, 1000) * 4);
+        this.chatRetentionMs = Math.max(chatRetentionMs, 0);
+    }
+
+    /**
+     * Índice de la reproducción (transmisión y rango de tiempo)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            mongoTemplate.indexOps(FragmentoTransmision.class).ensureIndex(new Index()
+                    .on("transmisionId", Sort.Direction.ASC)
+                    .on("desde", Sort.Direction.ASC)
+                    .on("hasta", Sort.Direction.ASC)
+                    .named("transmision_rango"));
+        } catch (Exception e) {
+            log.error("Error al crear el índice de fragmentos de transmisión: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ciclo de archivo de todas las transmisiones con eventos nuevos
+     * Solo un nodo del cluster lo ejecuta a la vez (lock en Redis)
+     */
+    @Scheduled(fixedDelayString = "${live.archive.interval-ms:5000}")
+    public void archiveAll() {
+        if (!lock()) {
+            return;
+        }
+        try {
+            Map<String, List<MapRecord<String, String, String>>> donations = readDonations();
+
+            // Finalizadas pendientes de su último archivo (ya no figuran como activas)
+            Set<String> finals = Optional.ofNullable(redisTemplate.opsForSet().members(FINAL_KEY))
+                    .orElse(Collections.emptySet());
+            Set<String> liveIds = new HashSet<>(livePresenceService.getActiveLiveIds());
+            liveIds.addAll(finals);
+            liveIds.addAll(donations.keySet());
+
+            List<RecordId> archivedDonations = new ArrayList<>();
+            for (String liveId : liveIds) {
+                List<MapRecord<String, String, String>> liveDonations =
+                        donations.getOrDefault(liveId, Collections.emptyList());
+                if (archiveLive(liveId, liveDonations)) {
+                    liveDonations.forEach(record -> archivedDonations.add(record.getId()));
+                    if (finals.contains(liveId)) {
+                        redisTemplate.opsForSet().remove(FINAL_KEY, liveId);
+                    }
+                }
+            }
+            if (!archivedDonations.isEmpty()) {
+                redisTemplate.opsForStream().acknowledge(DonationWriteBehindService.QUEUE_KEY, DONATIONS_GROUP,
+                        archivedDonations.toArray(new RecordId[0]));
+            }
+        } catch (Exception e) {
+            log.error("Error en el archivo de transmisiones: {}", e.getMessage(), e);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Último archivo de una transmisión que finaliza (chat y preguntas pendientes)
+     *
+     * Queda registrada en live:archive:finales para que el ciclo la siga archivando
+     * aunque ya no esté activa. Si el lock está libre se archiva en el momento; si
+     * lo tiene un ciclo en curso, se deja para el próximo ciclo (nunca se archiva
+     * fuera del lock, para no generar fragmentos duplicados).
+     */
+    public void archiveLive(String liveId) {
+        redisTemplate.opsForSet().add(FINAL_KEY, liveId);
+        if (!lock()) {
+            return;
+        }
+        try {
+            if (archiveLive(liveId, Collections.emptyList())) {
+                redisTemplate.opsForSet().remove(FINAL_KEY, liveId);
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Eventos archivados de un contenido de tipo "live", sincronizados con la reproducción
+     *
+     * @param contenidoId ID del Contenido guardado al finalizar la transmisión
+     * @param offsetMs Posición de reproducción (ms desde el inicio de la transmisión)
+     * @param durationMs Ventana a devolver a partir de la posición
+     * @return Eventos con su "offsetMs", o Optional.empty() si el contenido no es una transmisión archivada
+     */
+    public Optional<Map<String, Object>> getReplay(String contenidoId, long offsetMs, long durationMs) {
+        Optional<Contenido> contenido = contenidoRepository.findById(contenidoId);
+        if (contenido.isEmpty() || !"live".equals(contenido.get().getTipo())
+                || contenido.get().getMetadatosEnriquecidos() == null) {
+            return Optional.empty();
+        }
+        Object transmisionId = contenido.get().getMetadatosEnriquecidos().get("transmisionId");
+        if (transmisionId == null) {
+            return Optional.empty();
+        }
+        Optional<Transmision> transmision = transmisionRepository.findById(transmisionId.toString());
+        if (transmision.isEmpty() || transmision.get().getFechaInicio() == null) {
+            return Optional.empty();
+        }
+
+        long start = transmision.get().getFechaInicio().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long from = start + Math.max(offsetMs, 0);
+        long to = from + Math.min(Math.max(durationMs, 1), MAX_REPLAY_WINDOW_MS);
+
+        List<Map<String, Object>> eventos = new ArrayList<>();
+        for (FragmentoTransmision fragmento : fragmentoRepository
+                .findByTransmisionIdAndHastaGreaterThanEqualAndDesdeLessThanOrderByDesdeAsc(
+                        transmisionId.toString(), from, to)) {
+            for (Evento evento : decompress(fragmento.getEventos())) {
+                if (evento.getTs() >= from && evento.getTs() < to) {
+                    Map<String, Object> item = objectMapper.convertValue(evento, new TypeReference<>() {});
+                    item.put("offsetMs", evento.getTs() - start);
+                    eventos.add(item);
+                }
+            }
+        }
+        eventos.sort(Comparator.comparingLong(e -> ((Number) e.get("offsetMs")).longValue()));
+
+        Map<String, Object> replay = new HashMap<>();
+        replay.put("contenidoId", contenidoId);
+        replay.put("transmisionId", transmisionId);
+        replay.put("desdeMs", from - start);
+        replay.put("hastaMs", to - start);
+        replay.put("eventos", eventos);
+        return Optional.of(replay);
+    }
+
+    /**
+     * Archiva los eventos nuevos de una transmisión
+     * @return true si se guardaron (o no había nada que guardar)
+     */
+    private boolean archiveLive(String liveId, List<MapRecord<String, String, String>> donations) {
+        try {
+            List<Evento> eventos = new ArrayList<>();
+
+            String chatCursor = cursor(liveId, "chat");
+            List<MapRecord<String, String, String>> chat = readChat(liveId, chatCursor);
+            for (MapRecord<String, String, String> record : chat) {
+                eventos.add(Evento.builder()
+                        .tipo("CHAT")
+                        .id(record.getId().getValue())
+                        .ts(record.getId().getTimestamp())
+                        .userId(record.getValue().get("userId"))
+                        .texto(record.getValue().get("texto"))
+                        .build());
+            }
+
+            long questionCursor = Long.parseLong(Optional.ofNullable(cursor(liveId, "preguntas")).orElse("0"));
+            long lastQuestion = questionCursor;
+            for (Map<String, Object> question : liveQuestionService.getAfter(liveId, questionCursor, batchSize)) {
+                String id = String.valueOf(question.get("id"));
+                lastQuestion = Math.max(lastQuestion, Long.parseLong(id));
+                eventos.add(Evento.builder()
+                        .tipo("QUESTION")
+                        .id(id)
+                        .ts(((Number) question.get("ts")).longValue())
+                        .userId((String) question.get("userId"))
+                        .userName((String) question.get("userName"))
+                        .texto((String) question.get("question"))
+                        .build());
+            }
+
+            for (MapRecord<String, String, String> record : donations) {
+                Map<String, String> fields = record.getValue();
+                eventos.add(Evento.builder()
+                        .tipo("DONATION")
+                        .id(fields.get("id"))
+                        .ts(Long.parseLong(fields.get("ts")))
+                        .userId(fields.get("donorId"))
+                        .monto(Double.parseDouble(fields.get("amount")))
+                        .build());
+            }
+
+            if (eventos.isEmpty()) {
+                return true;
+            }
+            saveFragments(liveId, eventos);
+
+            // Avanzar cursores solo después de guardar
+            if (!chat.isEmpty()) {
+                RecordId last = chat.get(chat.size() - 1).getId();
+                redisTemplate.opsForHash().put(CURSOR_KEY, liveId + ":chat", last.getValue());
+                trimChat(liveId, last);
+            }
+            if (lastQuestion > questionCursor) {
+                redisTemplate.opsForHash().put(CURSOR_KEY, liveId + ":preguntas", String.valueOf(lastQuestion));
+            }
+            log.info("Live {}: {} eventos archivados", liveId, eventos.size());
+            return true;
+
+        } catch (Exception e) {
+            log.error("Error al archivar live {}: {}", liveId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Agrupa los eventos por ventana de tiempo y los agrega al fragmento de cada
+     * ventana (uno por ventana; los eventos ya archivados no se repiten)
+     */
+    private void saveFragments(String liveId, List<Evento> eventos) throws IOException {
+        Map<String, List<Evento>> buckets = new LinkedHashMap<>();
+        for (Evento evento : eventos) {
+            long bucket = evento.getTs() - (evento.getTs() % bucketMs);
+            buckets.computeIfAbsent(liveId + ":" + bucket, b -> new ArrayList<>()).add(evento);
+        }
+
+        Map<String, FragmentoTransmision> existing = new HashMap<>();
+        fragmentoRepository.findAllById(buckets.keySet()).forEach(f -> existing.put(f.getId(), f));
+
+        List<FragmentoTransmision> fragmentos = new ArrayList<>(buckets.size());
+        for (Map.Entry<String, List<Evento>> entry : buckets.entrySet()) {
+            Map<String, Evento> merged = new LinkedHashMap<>();
+            FragmentoTransmision previous = existing.get(entry.getKey());
+            if (previous != null) {
+                decompress(previous.getEventos()).forEach(e -> merged.put(e.getTipo() + ":" + e.getId(), e));
+            }
+            entry.getValue().forEach(e -> merged.put(e.getTipo() + ":" + e.getId(), e));
+
+            List<Evento> bucketEventos = new ArrayList<>(merged.values());
+            bucketEventos.sort(Comparator.comparingLong(Evento::getTs));
+            long start = bucketEventos.get(0).getTs();
+            fragmentos.add(FragmentoTransmision.builder()
+                    .id(entry.getKey())
+                    .transmisionId(liveId)
+                    .bucket(start - (start % bucketMs))
+                    .desde(start)
+                    .hasta(bucketEventos.get(bucketEventos.size() - 1).getTs())
+                    .cantidad(bucketEventos.size())
+                    .eventos(compress(bucketEventos))
+                    .build());
+        }
+        fragmentoRepository.saveAll(fragmentos);
+    }
+
+    /**
+     * Chat posterior al cursor
+     * Se lee desde el cursor inclusive: si la primera entrada ya no es la del cursor,
+     * se recortaron entradas sin archivar y se registra el hueco
+     */
+    private List<MapRecord<String, String, String>> readChat(String liveId, String cursor) {
+        StreamOperations<String, String, String> streamOps = redisTemplate.opsForStream();
+        if (cursor == null) {
+            List<MapRecord<String, String, String>> records = streamOps.range(CHAT_PREFIX + liveId,
+                    Range.unbounded(), Limit.limit().count(batchSize));
+            return records != null ? records : Collections.emptyList();
+        }
+
+        List<MapRecord<String, String, String>> records = streamOps.range(CHAT_PREFIX + liveId,
+                Range.rightUnbounded(Range.Bound.inclusive(cursor)), Limit.limit().count(batchSize + 1));
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (cursor.equals(records.get(0).getId().getValue())) {
+            return records.subList(1, records.size());
+        }
+        log.warn("Live {}: hueco en el chat archivado, entradas recortadas entre {} y {}",
+                liveId, cursor, records.get(0).getId().getValue());
+        return records.size() > batchSize ? records.subList(0, batchSize) : records;
+    }
+
+    /**
+     * Borra del stream el chat ya archivado, conservando los últimos "chat-retention-ms"
+     * (nunca entradas posteriores al cursor)
+     */
+    private void trimChat(String liveId, RecordId archived) {
+        try {
+            long minTs = Math.max(archived.getTimestamp() - chatRetentionMs, 0);
+            redisTemplate.execute(redisScripts.getChatTrim(), List.of(CHAT_PREFIX + liveId), minTs + "-0");
+        } catch (Exception e) {
+            log.warn("No se pudo recortar el chat de live {}: {}", liveId, e.getMessage());
+        }
+    }
+
+    /**
+     * Lee donaciones del consumer group de archivo: las pendientes de ciclos fallidos
+     * (reclamadas para este nodo, que tiene el lock) y las nuevas.
+     * Devuelve las entradas por transmisión.
+     */
+    private Map<String, List<MapRecord<String, String, String>>> readDonations() {
+        if (!ensureGroup()) {
+            return Collections.emptyMap();
+        }
+        StreamOperations<String, String, String> streamOps = redisTemplate.opsForStream();
+        List<MapRecord<String, String, String>> records = new ArrayList<>();
+
+        PendingMessages pending = streamOps.pending(DonationWriteBehindService.QUEUE_KEY, DONATIONS_GROUP,
+                Range.unbounded(), batchSize);
+        if (pending != null && !pending.isEmpty()) {
+            List<RecordId> ids = new ArrayList<>(pending.size());
+            for (PendingMessage message : pending) {
+                ids.add(message.getId());
+            }
+            List<MapRecord<String, String, String>> claimed = streamOps.claim(DonationWriteBehindService.QUEUE_KEY,
+                    DONATIONS_GROUP, nodeId, Duration.ZERO, ids.toArray(new RecordId[0]));
+            if (claimed != null) {
+                records.addAll(claimed);
+            }
+        }
+
+        List<MapRecord<String, String, String>> fresh = streamOps.read(Consumer.from(DONATIONS_GROUP, nodeId),
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(DonationWriteBehindService.QUEUE_KEY, ReadOffset.lastConsumed()));
+        if (fresh != null) {
+            records.addAll(fresh);
+        }
+        if (records.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, List<MapRecord<String, String, String>>> byLive = new HashMap<>();
+        List<RecordId> withoutLive = new ArrayList<>();
+        for (MapRecord<String, String, String> record : records) {
+            String liveId = record.getValue().get("liveId");
+            if (liveId != null) {
+                byLive.computeIfAbsent(liveId, id -> new ArrayList<>()).add(record);
+            } else {
+                withoutLive.add(record.getId());
+            }
+        }
+        if (!withoutLive.isEmpty()) {
+            // Sin transmisión no hay nada que archivar: no deben quedar pendientes
+            streamOps.acknowledge(DonationWriteBehindService.QUEUE_KEY, DONATIONS_GROUP,
+                    withoutLive.toArray(new RecordId[0]));
+        }
+        return byLive;
+    }
+
+    private boolean ensureGroup() {
+        if (groupReady) {
+            return true;
+        }
+        try {
+            redisTemplate.opsForStream().createGroup(DonationWriteBehindService.QUEUE_KEY,
+                    ReadOffset.from("0"), DONATIONS_GROUP);
+            log.info("Consumer group {} creado en {}", DONATIONS_GROUP, DonationWriteBehindService.QUEUE_KEY);
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && (e.getCause() == null || !String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                log.warn("No se pudo crear el consumer group {}: {}", DONATIONS_GROUP, e.getMessage());
+                return false;
+            }
+        }
+        groupReady = true;
+        return true;
+    }
+
+    private boolean lock() {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, lockTtl));
+    }
+
+    private void unlock() {
+        if (nodeId.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+            redisTemplate.delete(LOCK_KEY);
+        }
+    }
+
+    private String cursor(String liveId, String source) {
+        Object value = redisTemplate.opsForHash().get(CURSOR_KEY, liveId + ":" + source);
+        return value != null ? value.toString() : null;
+    }
+
+    private byte[] compress(List<Evento> eventos) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            objectMapper.writeValue(gzip, eventos);
+        }
+        return out.toByteArray();
+    }
+
+    private List<Evento> decompress(byte[] data) {
+        if (data == null || data.length == 0) {
+            return Collections.emptyList();
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(gzip, new TypeReference<List<Evento>>() {});
+        } catch (IOException e) {
+            log.error("Fragmento de transmisión ilegible: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.uade.tpo.marketplace.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Miembros del cluster y dueño de cada sala en vivo (modo opcional)
+ *
+ * Con "live.ownership.enabled=true" cada nodo se registra en live:nodes (ZSET
+ * nodeId -> último latido en ms) cada "live.ownership.heartbeat-ms". Los nodos
+ * sin latido en "live.ownership.node-ttl-ms" se quitan de la lista. Con los
+ * miembros vigentes se arma un anillo de hash consistente que asigna cada
+ * liveId a un único nodo dueño.
+ *
+ * Con el modo desactivado, este nodo es dueño de todas las salas.
+ */
+@Slf4j
+@Service
+public class LiveClusterMembership {
+
+    private static final String NODES_KEY = "live:nodes";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId;
+    private final boolean enabled;
+    private final long nodeTtlMs;
+    private final int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+
+    public LiveClusterMembership(RedisTemplate<String, String> redisTemplate,
+                                 LiveEventBus liveEventBus,
+                                 @Value("${live.ownership.enabled:false}") boolean enabled,
+                                 @Value("${live.ownership.node-ttl-ms:10000}") long nodeTtlMs,
+                                 @Value("${live.ownership.virtual-nodes:128}") int virtualNodes) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = liveEventBus.getNodeId();
+        this.enabled = enabled;
+        this.nodeTtlMs = nodeTtlMs;
+        this.virtualNodes = virtualNodes;
+        this.ring = ConsistentHashRing.of(Set.of(nodeId), virtualNodes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Nodo dueño de la sala
+     */
+    public String ownerOf(String liveId) {
+        if (!enabled) {
+            return nodeId;
+        }
+        String owner = ring.ownerOf(liveId);
+        return owner != null ? owner : nodeId;
+    }
+
+    public boolean isLocalOwner(String liveId) {
+        return nodeId.equals(ownerOf(liveId));
+    }
+
+    public Set<String> getNodes() {
+        return ring.nodes();
+    }
+
+    /**
+     * Latido del nodo y actualización de miembros
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${live.ownership.heartbeat-ms:3000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - nodeTtlMs);
+
+            Set<String> members = redisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+            Set<String> nodes = members != null ? new HashSet<>(members) : new HashSet<>();
+            nodes.add(nodeId);
+            if (!nodes.equals(ring.nodes())) {
+                ring = ConsistentHashRing.of(nodes, virtualNodes);
+                log.info("Miembros del cluster en vivo actualizados: {}", nodes);
+            }
+        } catch (Exception e) {
+            log.error("Error en el latido del nodo {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Sale del cluster al detener la aplicación para que otro nodo tome sus salas enseguida
+     */
+    @PreDestroy
+    public void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+        } catch (Exception e) {
+            log.warn("No se pudo quitar el nodo {} del cluster: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.uade.tpo.marketplace.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Bus de eventos de transmisiones en vivo sobre Redis Pub/Sub
+ *
+ * Cada nodo de la aplicación tiene un ID propio que se incluye como "origin"
+ * en los eventos que publica. Así el relay de cada nodo puede descartar sus
+ * propios eventos (ya entregados localmente) y reenviar solo los de otros nodos.
+ */
+@Slf4j
+@Service
+public class LiveEventBus {
+
+    public static final String CHANNEL_PREFIX = "live:events:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+
+    public LiveEventBus(RedisTemplate<String, String> redisTemplate,
+                        ObjectMapper objectMapper,
+                        @Value("${live.node-id:}") String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        log.info("Nodo de eventos en vivo inicializado con ID {}", this.nodeId);
+    }
+
+    /**
+     * ID de este nodo dentro del cluster
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Publica un evento en el canal de la transmisión, marcándolo con el origen de este nodo
+     */
+    public void publish(LiveEventMessage event) {
+        redisTemplate.convertAndSend(CHANNEL_PREFIX + event.getLiveId(), encode(event));
+    }
+
+    /**
+     * Serializa un evento completando origen y timestamp si no los tiene
+     */
+    public String encode(LiveEventMessage event) {
+        if (event.getOrigin() == null) {
+            event.setOrigin(nodeId);
+        }
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(Instant.now().toEpochMilli());
+        }
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento en vivo", e);
+        }
+    }
+
+    /**
+     * Deserializa un evento recibido por Pub/Sub
+     * @return El evento, o null si el mensaje no tiene el formato esperado
+     */
+    public LiveEventMessage decode(String payload) {
+        try {
+            return objectMapper.readValue(payload, LiveEventMessage.class);
+        } catch (Exception e) {
+            log.debug("Mensaje de evento en vivo ignorado (formato desconocido): {}", payload);
+            return null;
+        }
+    }
+
+    /**
+     * Indica si el evento fue originado por este mismo nodo
+     */
+    public boolean isLocal(LiveEventMessage event) {
+        return nodeId.equals(event.getOrigin());
+    }
+}
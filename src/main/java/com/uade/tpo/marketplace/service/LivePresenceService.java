@@ -0,0 +1,180 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Servicio de presencia de espectadores en transmisiones en vivo
+ *
+ * Modelo basado en heartbeats:
+ * - live:presence:{liveId}: Sorted Set (userId -> último heartbeat en ms)
+ * - live:stats:{liveId}: Hash con el pico de concurrencia (peakViewers)
+ * - live:concurrency:{liveId}: Hash minuto -> máximo de espectadores (serie temporal)
+ * - live:active: Set con los IDs de transmisiones activas
+ *
+ * Un barrido periódico elimina a los espectadores que dejaron de enviar heartbeats
+ * (clientes caídos) y registra la muestra de concurrencia de cada minuto.
+ */
+@Slf4j
+@Service
+public class LivePresenceService {
+
+    private static final String ACTIVE_LIVES_KEY = "live:active";
+    private static final String PRESENCE_PREFIX = "live:presence:";
+    private static final String STATS_PREFIX = "live:stats:";
+    private static final String CONCURRENCY_PREFIX = "live:concurrency:";
+    private static final String PEAK_FIELD = "peakViewers";
+    private static final long SERIES_TTL_SECONDS = 7 * 24 * 60 * 60;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScripts redisScripts;
+    private final LiveEventBus liveEventBus;
+    private final long presenceTtlMs;
+
+    public LivePresenceService(RedisTemplate<String, String> redisTemplate,
+                               RedisScripts redisScripts,
+                               LiveEventBus liveEventBus,
+                               @Value("${live.presence.ttl-ms:60000}") long presenceTtlMs) {
+        this.redisTemplate = redisTemplate;
+        this.redisScripts = redisScripts;
+        this.liveEventBus = liveEventBus;
+        this.presenceTtlMs = presenceTtlMs;
+    }
+
+    /**
+     * Registra o renueva la presencia de un espectador (join o heartbeat)
+     * Actualiza atómicamente el pico de concurrencia y la muestra del minuto y,
+     * si se informa un evento, lo publica en el mismo round trip
+     * @param event Evento serializado a publicar, o null para no publicar (heartbeat)
+     * @return Número de espectadores actuales
+     */
+    public long touch(String liveId, String userId, String event) {
+        long now = Instant.now().toEpochMilli();
+        Long viewers = redisTemplate.execute(redisScripts.getPresenceTouch(),
+                List.of(PRESENCE_PREFIX + liveId, STATS_PREFIX + liveId, CONCURRENCY_PREFIX + liveId),
+                userId, String.valueOf(now), String.valueOf(minuteOf(now)), String.valueOf(SERIES_TTL_SECONDS),
+                LiveEventBus.CHANNEL_PREFIX + liveId, event != null ? event : "");
+        return viewers != null ? viewers : 0L;
+    }
+
+    /**
+     * Elimina a un espectador de la transmisión (salida explícita) y publica el evento
+     */
+    public void remove(String liveId, String userId, String event) {
+        redisTemplate.execute(redisScripts.getPresenceLeave(),
+                List.of(PRESENCE_PREFIX + liveId),
+                userId, LiveEventBus.CHANNEL_PREFIX + liveId, event);
+    }
+
+    /**
+     * Número de espectadores actuales (ZCARD, O(1))
+     */
+    public long getViewersCount(String liveId) {
+        Long count = redisTemplate.opsForZSet().zCard(PRESENCE_PREFIX + liveId);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * IDs de los espectadores actuales
+     */
+    public List<String> getViewers(String liveId) {
+        Set<String> viewers = redisTemplate.opsForZSet().range(PRESENCE_PREFIX + liveId, 0, -1);
+        return viewers != null ? new ArrayList<>(viewers) : Collections.emptyList();
+    }
+
+    /**
+     * Pico de espectadores simultáneos desde el inicio de la transmisión
+     */
+    public long getPeakViewers(String liveId) {
+        Object peak = redisTemplate.opsForHash().get(STATS_PREFIX + liveId, PEAK_FIELD);
+        return peak != null ? Long.parseLong(peak.toString()) : 0L;
+    }
+
+    /**
+     * Serie temporal de concurrencia: máximo de espectadores por minuto, en orden cronológico
+     */
+    public List<Map<String, Object>> getConcurrencySeries(String liveId) {
+        Map<Object, Object> samples = redisTemplate.opsForHash().entries(CONCURRENCY_PREFIX + liveId);
+
+        TreeMap<Long, Long> ordered = new TreeMap<>();
+        samples.forEach((minute, viewers) ->
+                ordered.put(Long.parseLong(minute.toString()), Long.parseLong(viewers.toString())));
+
+        List<Map<String, Object>> series = new ArrayList<>(ordered.size());
+        ordered.forEach((minute, viewers) -> {
+            Map<String, Object> point = new HashMap<>();
+            point.put("minuto", Instant.ofEpochMilli(minute).toString());
+            point.put("espectadores", viewers);
+            series.add(point);
+        });
+        return series;
+    }
+
+    /**
+     * Marca una transmisión como activa para el barrido de presencia y publica el evento de inicio
+     */
+    public void markActive(String liveId, String event) {
+        redisTemplate.execute(redisScripts.getLiveStart(),
+                List.of(ACTIVE_LIVES_KEY), liveId, LiveEventBus.CHANNEL_PREFIX + liveId, event);
+    }
+
+    /**
+     * Quita una transmisión del conjunto de activas y publica el evento de finalización
+     */
+    public void markInactive(String liveId, String event) {
+        redisTemplate.execute(redisScripts.getLiveEnd(),
+                List.of(ACTIVE_LIVES_KEY), liveId, LiveEventBus.CHANNEL_PREFIX + liveId, event);
+    }
+
+    /**
+     * IDs de las transmisiones activas
+     */
+    public Set<String> getActiveLiveIds() {
+        Set<String> ids = redisTemplate.opsForSet().members(ACTIVE_LIVES_KEY);
+        return ids != null ? ids : Collections.emptySet();
+    }
+
+    /**
+     * Barrido periódico: elimina espectadores cuyo último heartbeat superó el TTL
+     * y registra la muestra de concurrencia del minuto actual. Si hubo expirados,
+     * el script publica un evento VIEWERS con el nuevo número de espectadores
+     */
+    @Scheduled(fixedDelayString = "${live.presence.sweep-interval-ms:15000}")
+    public void sweepExpiredViewers() {
+        long now = Instant.now().toEpochMilli();
+        String cutoff = String.valueOf(now - presenceTtlMs);
+        String minute = String.valueOf(minuteOf(now));
+
+        for (String liveId : getActiveLiveIds()) {
+            try {
+                String event = liveEventBus.encode(LiveEventMessage.builder()
+                        .type("VIEWERS")
+                        .liveId(liveId)
+                        .timestamp(now)
+                        .build());
+                List<?> result = redisTemplate.execute(redisScripts.getPresenceSweep(),
+                        List.of(PRESENCE_PREFIX + liveId, CONCURRENCY_PREFIX + liveId),
+                        cutoff, minute, String.valueOf(SERIES_TTL_SECONDS),
+                        LiveEventBus.CHANNEL_PREFIX + liveId, event);
+                if (result != null && !result.isEmpty() && ((Number) result.get(0)).longValue() > 0) {
+                    log.info("Presencia de live {}: {} espectadores expirados, {} activos",
+                            liveId, result.get(0), result.get(1));
+                }
+            } catch (Exception e) {
+                log.error("Error al barrer espectadores de live {}: {}", liveId, e.getMessage());
+            }
+        }
+    }
+
+    private static long minuteOf(long epochMillis) {
+        return epochMillis - (epochMillis % 60_000L);
+    }
+}
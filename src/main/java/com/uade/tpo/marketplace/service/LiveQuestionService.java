@@ -0,0 +1,285 @@
+package com.uade.tpo.marketplace.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Cola de preguntas y respuestas (Q&A) de las transmisiones en vivo
+ *
+ * Estructuras en Redis por transmisión:
+ * - live:preguntas:items:{liveId}: Hash ID -> pregunta (JSON)
+ * - live:preguntas:seq:{liveId}: contador que asigna IDs crecientes
+ * - live:preguntas:pendientes:{liveId}: Sorted Set de pendientes por orden de llegada
+ * - live:preguntas:votos:{liveId}: Sorted Set de pendientes por votos, con score
+ *   votos * VOTE_FACTOR - secuencia (a igual cantidad de votos, primero la más antigua)
+ * - live:preguntas:respondidas:{liveId}: Sorted Set de respondidas por fecha de respuesta
+ * - live:preguntas:votantes:{liveId}: Set "id|userId" (un voto por usuario)
+ *
+ * Las consultas son paginadas con cursor: solo se leen las preguntas de la
+ * página (HMGET), nunca la cola completa. Como el score del ranking por votos es
+ * único por pregunta, sirve de cursor (keyset) aunque el ranking cambie entre páginas.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LiveQuestionService {
+
+    public static final String STATUS_PENDING = "PENDIENTE";
+    public static final String STATUS_ANSWERED = "RESPONDIDA";
+    public static final String SORT_VOTES = "votes";
+    public static final String SORT_TIME = "time";
+    public static final long NOT_PENDING = -1L;
+    public static final long ALREADY_VOTED = -2L;
+
+    private static final String ITEMS_PREFIX = "live:preguntas:items:";
+    private static final String SEQ_PREFIX = "live:preguntas:seq:";
+    private static final String PENDING_PREFIX = "live:preguntas:pendientes:";
+    private static final String VOTES_PREFIX = "live:preguntas:votos:";
+    private static final String ANSWERED_PREFIX = "live:preguntas:respondidas:";
+    private static final String VOTERS_PREFIX = "live:preguntas:votantes:";
+    private static final int MAX_PAGE_SIZE = 100;
+    /** Separa votos y secuencia en el score (hasta 10^9 preguntas por transmisión) */
+    static final long VOTE_FACTOR = 1_000_000_000L;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScripts redisScripts;
+    private final LiveEventBus liveEventBus;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Registra una pregunta pendiente y publica el evento QUESTION
+     * @return ID asignado a la pregunta
+     */
+    public String ask(String liveId, String userId, String userName, String question) {
+        String event = liveEventBus.encode(LiveEventMessage.builder()
+                .type("QUESTION")
+                .liveId(liveId)
+                .userId(userId)
+                .userName(userName)
+                .text(question)
+                .build());
+
+        return redisTemplate.execute(redisScripts.getQuestionSend(),
+                List.of(SEQ_PREFIX + liveId, ITEMS_PREFIX + liveId, PENDING_PREFIX + liveId, VOTES_PREFIX + liveId),
+                userId, userName != null ? userName : "", question,
+                String.valueOf(Instant.now().toEpochMilli()), LiveEventBus.CHANNEL_PREFIX + liveId, event,
+                String.valueOf(VOTE_FACTOR));
+    }
+
+    /**
+     * Suma un voto a una pregunta pendiente y publica el evento QUESTION_UPVOTE
+     * @return Votos actualizados, NOT_PENDING o ALREADY_VOTED
+     */
+    public long upvote(String liveId, String questionId, String userId) {
+        String event = liveEventBus.encode(LiveEventMessage.builder()
+                .type("QUESTION_UPVOTE")
+                .liveId(liveId)
+                .userId(userId)
+                .questionId(questionId)
+                .build());
+
+        Long votes = redisTemplate.execute(redisScripts.getQuestionUpvote(),
+                List.of(PENDING_PREFIX + liveId, VOTES_PREFIX + liveId, VOTERS_PREFIX + liveId),
+                questionId, userId, LiveEventBus.CHANNEL_PREFIX + liveId, event, String.valueOf(VOTE_FACTOR));
+        return votes != null ? votes : NOT_PENDING;
+    }
+
+    /**
+     * Marca una pregunta como respondida y publica el evento QUESTION_ANSWERED
+     * @return Votos finales de la pregunta o NOT_PENDING
+     */
+    public long answer(String liveId, String questionId) {
+        String event = liveEventBus.encode(LiveEventMessage.builder()
+                .type("QUESTION_ANSWERED")
+                .liveId(liveId)
+                .questionId(questionId)
+                .build());
+
+        Long votes = redisTemplate.execute(redisScripts.getQuestionAnswer(),
+                List.of(ITEMS_PREFIX + liveId, PENDING_PREFIX + liveId, VOTES_PREFIX + liveId,
+                        ANSWERED_PREFIX + liveId),
+                questionId, String.valueOf(Instant.now().toEpochMilli()),
+                LiveEventBus.CHANNEL_PREFIX + liveId, event, String.valueOf(VOTE_FACTOR));
+        return votes != null ? votes : NOT_PENDING;
+    }
+
+    /**
+     * Página de preguntas
+     *
+     * - Pendientes por votos (sort=votes): cursor = score de la última pregunta
+     *   (votos y secuencia); la página sigue con los scores menores
+     * - Pendientes por llegada (sort=time): cursor = ID de la última pregunta recibida
+     * - Respondidas: de la más reciente a la más antigua, cursor = posición (offset)
+     *
+     * @return Mapa con "items" y "nextCursor" (null si no hay más)
+     */
+    public Map<String, Object> getPage(String liveId, String estado, String sort, String cursor, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        ZSetOperations<String, String> zSetOps = redisTemplate.opsForZSet();
+
+        List<String> ids = new ArrayList<>(size);
+        Map<String, Long> votes = new HashMap<>();
+        String nextCursor = null;
+
+        if (STATUS_ANSWERED.equalsIgnoreCase(estado)) {
+            long offset = parseOffset(cursor);
+            Set<String> page = zSetOps.reverseRange(ANSWERED_PREFIX + liveId, offset, offset + size - 1);
+            if (page != null) {
+                ids.addAll(page);
+            }
+            if (ids.size() == size) {
+                nextCursor = String.valueOf(offset + size);
+            }
+        } else if (SORT_TIME.equalsIgnoreCase(sort)) {
+            // El score es la secuencia (entera): la página arranca después del cursor
+            double min = cursor == null || cursor.isBlank() ? 0 : Long.parseLong(cursor) + 1;
+            Set<String> page = zSetOps.rangeByScore(PENDING_PREFIX + liveId, min, Double.POSITIVE_INFINITY, 0, size);
+            if (page != null) {
+                ids.addAll(page);
+            }
+            if (!ids.isEmpty()) {
+                List<Double> scores = zSetOps.score(VOTES_PREFIX + liveId, ids.toArray());
+                for (int i = 0; i < ids.size(); i++) {
+                    Double score = scores != null ? scores.get(i) : null;
+                    if (score != null) {
+                        votes.put(ids.get(i), votesOf(ids.get(i), score));
+                    }
+                }
+            }
+            if (ids.size() == size) {
+                nextCursor = ids.get(ids.size() - 1);
+            }
+        } else {
+            // Scores enteros y únicos: la página arranca en el siguiente score menor al cursor
+            double max = cursor == null || cursor.isBlank() ? Double.POSITIVE_INFINITY : Long.parseLong(cursor) - 1;
+            Set<ZSetOperations.TypedTuple<String>> page = zSetOps.reverseRangeByScoreWithScores(
+                    VOTES_PREFIX + liveId, Double.NEGATIVE_INFINITY, max, 0, size);
+            long lastScore = 0L;
+            if (page != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : page) {
+                    if (tuple.getValue() == null || tuple.getScore() == null) {
+                        continue;
+                    }
+                    ids.add(tuple.getValue());
+                    votes.put(tuple.getValue(), votesOf(tuple.getValue(), tuple.getScore()));
+                    lastScore = tuple.getScore().longValue();
+                }
+            }
+            if (ids.size() == size) {
+                nextCursor = String.valueOf(lastScore);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", load(liveId, ids, votes));
+        result.put("nextCursor", nextCursor);
+        return result;
+    }
+
+    /**
+     * Número de preguntas pendientes (ZCARD, O(1))
+     */
+    public long getPendingCount(String liveId) {
+        Long count = redisTemplate.opsForZSet().zCard(PENDING_PREFIX + liveId);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Total de preguntas recibidas en la transmisión
+     */
+    public long getTotalCount(String liveId) {
+        String seq = redisTemplate.opsForValue().get(SEQ_PREFIX + liveId);
+        return seq != null ? Long.parseLong(seq) : 0L;
+    }
+
+    /**
+     * Preguntas con ID mayor a "afterSeq", en orden de llegada y sin formatear
+     * (fecha "ts" en epoch ms). Usado por el archivo de transmisiones.
+     */
+    public List<Map<String, Object>> getAfter(String liveId, long afterSeq, int limit) {
+        long last = Math.min(getTotalCount(liveId), afterSeq + limit);
+        if (last <= afterSeq) {
+            return Collections.emptyList();
+        }
+        List<Object> ids = new ArrayList<>();
+        for (long seq = afterSeq + 1; seq <= last; seq++) {
+            ids.add(String.valueOf(seq));
+        }
+        List<Object> raw = redisTemplate.opsForHash().multiGet(ITEMS_PREFIX + liveId, ids);
+
+        List<Map<String, Object>> questions = new ArrayList<>(ids.size());
+        for (Object json : raw) {
+            if (json == null) {
+                continue;
+            }
+            try {
+                questions.add(objectMapper.readValue(json.toString(), new TypeReference<>() {}));
+            } catch (Exception e) {
+                log.warn("Pregunta de live {} con formato inválido: {}", liveId, e.getMessage());
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * Lee las preguntas de la página en un solo HMGET, conservando el orden de los IDs
+     */
+    private List<Map<String, Object>> load(String liveId, List<String> ids, Map<String, Long> votes) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> raw = redisTemplate.opsForHash().multiGet(ITEMS_PREFIX + liveId, new ArrayList<>(ids));
+
+        List<Map<String, Object>> questions = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Object json = raw.get(i);
+            if (json == null) {
+                continue;
+            }
+            try {
+                Map<String, Object> q = objectMapper.readValue(json.toString(), new TypeReference<>() {});
+                Object ts = q.remove("ts");
+                if (ts instanceof Number number) {
+                    q.put("timestamp", Instant.ofEpochMilli(number.longValue()).toString());
+                }
+                Object answeredAt = q.get("answeredAt");
+                if (answeredAt instanceof Number number) {
+                    q.put("answeredAt", Instant.ofEpochMilli(number.longValue()).toString());
+                }
+                Long count = votes.get(ids.get(i));
+                if (count != null) {
+                    q.put("votes", count);
+                }
+                q.putIfAbsent("votes", 0L);
+                questions.add(q);
+            } catch (Exception e) {
+                log.warn("Pregunta {} de live {} con formato inválido: {}", ids.get(i), liveId, e.getMessage());
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * Votos de una pregunta a partir de su score en el ranking (el ID es la secuencia)
+     */
+    static long votesOf(String questionId, double score) {
+        return ((long) score + Long.parseLong(questionId)) / VOTE_FACTOR;
+    }
+
+    private static long parseOffset(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        return Math.max(Long.parseLong(cursor), 0L);
+    }
+}
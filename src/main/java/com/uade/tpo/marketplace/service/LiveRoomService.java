@@ -0,0 +1,502 @@
+package com.uade.tpo.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Estado de las salas en memoria del nodo dueño (modo "live.ownership.enabled")
+ *
+ * El nodo dueño de una sala (ver LiveClusterMembership) mantiene en memoria los
+ * espectadores con su último heartbeat, el pico de concurrencia, el contador de
+ * mensajes y el chat pendiente de guardar. Las escrituras de chat y presencia:
+ * - En el nodo dueño se aplican en memoria y publican el evento en
+ *   "live:events:{liveId}" como siempre (el origen es el nodo que recibió al cliente)
+ * - En otro nodo se encolan y se reenvían agrupadas al dueño por el canal
+ *   "live:node:{nodeId}" cada "live.ownership.forward-interval-ms"
+ *
+ * Redis queda solo para durabilidad y recuperación: cada
+ * "live.ownership.flush-interval-ms" el dueño guarda los cambios de todas sus
+ * salas en un único pipeline (XADD del chat, contador de mensajes, ZADD/ZREM de
+ * presencia, pico y muestra del minuto). El pico y la muestra del minuto se
+ * escriben como máximo (scripts/live/hash_max.lua): durante un cambio de dueño
+ * otro nodo pudo guardar un valor mayor. Los heartbeats no generan tráfico a
+ * Redis por mensaje. Si el dueño cae, el nuevo dueño carga la sala desde Redis
+ * en el primer acceso; se pierde lo no guardado del último intervalo.
+ *
+ * Preguntas y donaciones siguen usando sus scripts atómicos en Redis.
+ */
+@Slf4j
+@Service
+public class LiveRoomService implements MessageListener {
+
+    private static final String NODE_CHANNEL_PREFIX = "live:node:";
+    private static final String CHAT_PREFIX = "live:chat:";
+    private static final String PRESENCE_PREFIX = "live:presence:";
+    private static final String STATS_PREFIX = "live:stats:";
+    private static final String CONCURRENCY_PREFIX = "live:concurrency:";
+    // Tope de seguridad (mismo que LiveService): el recorte normal lo hace el archivo con MINID
+    private static final long CHAT_STREAM_MAX_LENGTH = 100_000;
+    private static final long SERIES_TTL_SECONDS = 7 * 24 * 60 * 60;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final byte[] hashMaxScript;
+    private final LiveClusterMembership membership;
+    private final LiveEventBus liveEventBus;
+    private final ObjectMapper objectMapper;
+    private final long presenceTtlMs;
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Queue<RoomOp>> outbox = new ConcurrentHashMap<>();
+
+    public LiveRoomService(RedisTemplate<String, String> redisTemplate,
+                           RedisMessageListenerContainer listenerContainer,
+                           RedisScripts redisScripts,
+                           LiveClusterMembership membership,
+                           LiveEventBus liveEventBus,
+                           ObjectMapper objectMapper,
+                           @Value("${live.presence.ttl-ms:60000}") long presenceTtlMs) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        // EVAL con el código (no EVALSHA): dentro de un pipeline no se puede reintentar ante NOSCRIPT
+        this.hashMaxScript = bytes(redisScripts.getHashMax().getScriptAsString());
+        this.membership = membership;
+        this.liveEventBus = liveEventBus;
+        this.objectMapper = objectMapper;
+        this.presenceTtlMs = presenceTtlMs;
+    }
+
+    /**
+     * Escritura de sala: CHAT, JOIN, HEARTBEAT o LEAVE, con el nodo que recibió al cliente
+     */
+    public record RoomOp(String op, String liveId, String userId, String userName, String text,
+                         long ts, String origin) {
+    }
+
+    /**
+     * Escrituras reenviadas al dueño en un solo mensaje
+     */
+    public record ForwardBatch(String from, List<RoomOp> ops) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (membership.isEnabled()) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(NODE_CHANNEL_PREFIX + membership.getNodeId()));
+            log.info("Modo de salas con dueño activo: nodo {}", membership.getNodeId());
+        }
+    }
+
+    public boolean isEnabled() {
+        return membership.isEnabled();
+    }
+
+    public void chat(String liveId, String userId, String text) {
+        route(op("CHAT", liveId, userId, null, text));
+    }
+
+    public void join(String liveId, String userId, String userName) {
+        route(op("JOIN", liveId, userId, userName, null));
+    }
+
+    public void heartbeat(String liveId, String userId) {
+        route(op("HEARTBEAT", liveId, userId, null, null));
+    }
+
+    public void leave(String liveId, String userId) {
+        route(op("LEAVE", liveId, userId, null, null));
+    }
+
+    /**
+     * Guarda en Redis el estado pendiente de una sala de este nodo (al finalizar la transmisión)
+     */
+    public void flushRoom(String liveId) {
+        Room room = rooms.get(liveId);
+        if (room != null) {
+            persist(Map.of(liveId, room));
+        }
+    }
+
+    // ========== REENVÍO AL DUEÑO ==========
+
+    private RoomOp op(String type, String liveId, String userId, String userName, String text) {
+        return new RoomOp(type, liveId, userId, userName, text, System.currentTimeMillis(), membership.getNodeId());
+    }
+
+    private void route(RoomOp op) {
+        String owner = membership.ownerOf(op.liveId());
+        if (membership.getNodeId().equals(owner)) {
+            apply(op);
+        } else {
+            outbox.computeIfAbsent(owner, id -> new ConcurrentLinkedQueue<>()).offer(op);
+        }
+    }
+
+    /**
+     * Envía a cada dueño las escrituras acumuladas en un único mensaje
+     * Si el dueño no está suscrito (caído), las escrituras se aplican localmente
+     */
+    @Scheduled(fixedDelayString = "${live.ownership.forward-interval-ms:50}")
+    public void forward() {
+        if (outbox.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Queue<RoomOp>> entry : outbox.entrySet()) {
+            List<RoomOp> ops = new ArrayList<>();
+            RoomOp op;
+            while ((op = entry.getValue().poll()) != null) {
+                ops.add(op);
+            }
+            if (ops.isEmpty()) {
+                continue;
+            }
+            try {
+                byte[] channel = (NODE_CHANNEL_PREFIX + entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                byte[] payload = objectMapper.writeValueAsBytes(new ForwardBatch(membership.getNodeId(), ops));
+                Long receivers = redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.publish(channel, payload));
+                if (receivers == null || receivers == 0) {
+                    log.warn("Nodo {} sin suscripción: {} escrituras aplicadas localmente", entry.getKey(), ops.size());
+                    ops.forEach(this::apply);
+                }
+            } catch (Exception e) {
+                log.error("Error al reenviar {} escrituras al nodo {}: {}", ops.size(), entry.getKey(), e.getMessage());
+                ops.forEach(this::apply);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            ForwardBatch batch = objectMapper.readValue(message.getBody(), ForwardBatch.class);
+            batch.ops().forEach(this::apply);
+        } catch (Exception e) {
+            log.error("Error al aplicar escrituras reenviadas: {}", e.getMessage(), e);
+        }
+    }
+
+    // ========== ESTADO EN MEMORIA ==========
+
+    /**
+     * Aplica una escritura en la sala y publica el evento correspondiente
+     * Se aplica aunque este nodo haya dejado de ser el dueño: la sala se entrega
+     * al guardarse en el próximo flush. Si flush liberó la sala mientras se tomaba
+     * (marcada como cerrada), la escritura se aplica en la sala nueva.
+     */
+    private void apply(RoomOp op) {
+        LiveEventMessage event;
+        while (true) {
+            Room room = rooms.get(op.liveId());
+            if (room == null) {
+                room = rooms.computeIfAbsent(op.liveId(), this::load);
+            }
+            synchronized (room) {
+                if (!room.closed) {
+                    event = applyTo(room, op);
+                    break;
+                }
+            }
+        }
+
+        if (event != null) {
+            event.setLiveId(op.liveId());
+            event.setUserId(op.userId());
+            event.setOrigin(op.origin());
+            event.setTimestamp(op.ts());
+            liveEventBus.publish(event);
+        }
+    }
+
+    /**
+     * Cambia el estado de la sala (con el lock de la sala tomado)
+     * @return Evento a publicar, o null si la escritura no genera evento
+     */
+    private LiveEventMessage applyTo(Room room, RoomOp op) {
+        LiveEventMessage event = null;
+        room.lastActivity = System.currentTimeMillis();
+        switch (op.op()) {
+            case "CHAT" -> {
+                room.pendingChat.add(op);
+                event = LiveEventMessage.builder().type("CHAT").text(op.text()).build();
+            }
+            case "JOIN" -> {
+                room.touch(op.userId(), op.ts());
+                event = LiveEventMessage.builder().type("JOIN").userName(op.userName())
+                        .viewers((long) room.viewers.size()).build();
+            }
+            case "HEARTBEAT" -> room.touch(op.userId(), op.ts());
+            case "LEAVE" -> {
+                if (room.viewers.remove(op.userId()) != null) {
+                    room.touched.remove(op.userId());
+                    room.removed.add(op.userId());
+                }
+                event = LiveEventMessage.builder().type("LEAVE")
+                        .viewers((long) room.viewers.size()).build();
+            }
+            default -> log.debug("Escritura de sala desconocida: {}", op.op());
+        }
+        return event;
+    }
+
+    /**
+     * Carga una sala desde Redis (primer acceso o cambio de dueño)
+     */
+    private Room load(String liveId) {
+        Room room = new Room();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> viewers =
+                    redisTemplate.opsForZSet().rangeWithScores(PRESENCE_PREFIX + liveId, 0, -1);
+            if (viewers != null) {
+                for (ZSetOperations.TypedTuple<String> viewer : viewers) {
+                    if (viewer.getValue() != null && viewer.getScore() != null) {
+                        room.viewers.put(viewer.getValue(), viewer.getScore().longValue());
+                    }
+                }
+            }
+            Object peak = redisTemplate.opsForHash().get(STATS_PREFIX + liveId, "peakViewers");
+            room.peak = peak != null ? Long.parseLong(peak.toString()) : 0L;
+            log.info("Sala {} cargada desde Redis ({} espectadores)", liveId, room.viewers.size());
+        } catch (Exception e) {
+            log.error("Error al cargar la sala {} desde Redis: {}", liveId, e.getMessage());
+        }
+        return room;
+    }
+
+    /**
+     * Expira espectadores sin heartbeat, guarda los cambios en Redis y entrega
+     * las salas que pasaron a otro dueño
+     */
+    @Scheduled(fixedDelayString = "${live.ownership.flush-interval-ms:500}")
+    public void flush() {
+        if (rooms.isEmpty()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - presenceTtlMs;
+        for (Map.Entry<String, Room> entry : rooms.entrySet()) {
+            Room room = entry.getValue();
+            long viewers = -1;
+            synchronized (room) {
+                List<String> expired = new ArrayList<>();
+                room.viewers.forEach((userId, lastSeen) -> {
+                    if (lastSeen < cutoff) {
+                        expired.add(userId);
+                    }
+                });
+                if (!expired.isEmpty()) {
+                    expired.forEach(room.viewers::remove);
+                    expired.forEach(room.touched::remove);
+                    room.removed.addAll(expired);
+                    viewers = room.viewers.size();
+                }
+            }
+            if (viewers >= 0) {
+                liveEventBus.publish(LiveEventMessage.builder()
+                        .type("VIEWERS")
+                        .liveId(entry.getKey())
+                        .viewers(viewers)
+                        .build());
+            }
+        }
+
+        persist(rooms);
+
+        // Salas de otro dueño (cambio de miembros) o sin actividad: se liberan
+        long idleCutoff = System.currentTimeMillis() - Math.max(presenceTtlMs, 60_000) * 5;
+        for (Map.Entry<String, Room> entry : rooms.entrySet()) {
+            Room room = entry.getValue();
+            if (!membership.isLocalOwner(entry.getKey())
+                    || room.viewers.isEmpty() && room.lastActivity < idleCutoff) {
+                release(entry.getKey(), room);
+            }
+        }
+    }
+
+    @EventListener
+    public void onLiveEvent(LiveEventMessage event) {
+        if ("END".equals(event.getType()) && event.getLiveId() != null) {
+            Room room = rooms.get(event.getLiveId());
+            if (room != null) {
+                release(event.getLiveId(), room);
+            }
+        }
+    }
+
+    /**
+     * Quita la sala del mapa y guarda lo aplicado desde el último persist, todo con
+     * el lock de la sala: las escrituras que esperaban el lock van a una sala nueva,
+     * que se carga desde Redis ya con estos cambios
+     */
+    private void release(String liveId, Room room) {
+        synchronized (room) {
+            room.closed = true;
+            rooms.remove(liveId, room);
+            persist(Map.of(liveId, room));
+        }
+    }
+
+    /**
+     * Guarda los cambios pendientes de las salas en un único pipeline
+     * Si falla, los cambios vuelven a quedar pendientes para el próximo intento
+     */
+    private void persist(Map<String, Room> toPersist) {
+        Map<String, RoomChanges> changes = new LinkedHashMap<>();
+        toPersist.forEach((liveId, room) -> {
+            RoomChanges change = room.takeChanges();
+            if (!change.isEmpty()) {
+                changes.put(liveId, change);
+            }
+        });
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                changes.forEach((liveId, change) -> write(connection, liveId, change));
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Error al guardar {} salas en Redis: {}", changes.size(), e.getMessage(), e);
+            changes.forEach((liveId, change) -> {
+                Room room = toPersist.get(liveId);
+                if (room != null) {
+                    room.restore(change);
+                }
+            });
+        }
+    }
+
+    private void write(RedisConnection connection, String liveId, RoomChanges change) {
+        byte[] chatKey = bytes(CHAT_PREFIX + liveId);
+        byte[] presenceKey = bytes(PRESENCE_PREFIX + liveId);
+        byte[] statsKey = bytes(STATS_PREFIX + liveId);
+
+        if (!change.chat().isEmpty()) {
+            for (RoomOp chat : change.chat()) {
+                Map<byte[], byte[]> fields = new LinkedHashMap<>();
+                fields.put(bytes("userId"), bytes(chat.userId()));
+                fields.put(bytes("texto"), bytes(chat.text()));
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(fields).withStreamKey(chatKey));
+            }
+            connection.streamCommands().xTrim(chatKey, CHAT_STREAM_MAX_LENGTH, true);
+            connection.hashCommands().hIncrBy(statsKey, bytes("messageCount"), change.chat().size());
+        }
+        change.touched().forEach((userId, lastSeen) ->
+                connection.zSetCommands().zAdd(presenceKey, lastSeen, bytes(userId)));
+        if (!change.removed().isEmpty()) {
+            connection.zSetCommands().zRem(presenceKey,
+                    change.removed().stream().map(LiveRoomService::bytes).toArray(byte[][]::new));
+        }
+        if (change.peak() > 0) {
+            connection.scriptingCommands().eval(hashMaxScript, ReturnType.INTEGER, 1, statsKey,
+                    bytes("peakViewers"), bytes(String.valueOf(change.peak())), bytes("0"));
+        }
+        if (change.minuteMax() > 0) {
+            connection.scriptingCommands().eval(hashMaxScript, ReturnType.INTEGER, 1,
+                    bytes(CONCURRENCY_PREFIX + liveId), bytes(String.valueOf(change.minute())),
+                    bytes(String.valueOf(change.minuteMax())), bytes(String.valueOf(SERIES_TTL_SECONDS)));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Cambios de una sala pendientes de guardar en Redis
+     * peak y minuteMax en 0 indican que no cambiaron
+     */
+    private record RoomChanges(List<RoomOp> chat, Map<String, Long> touched, Set<String> removed,
+                               long peak, long minute, long minuteMax) {
+        boolean isEmpty() {
+            return chat.isEmpty() && touched.isEmpty() && removed.isEmpty() && peak == 0 && minuteMax == 0;
+        }
+    }
+
+    /**
+     * Estado de una sala; se accede sincronizando sobre la instancia
+     */
+    private static final class Room {
+        private final Map<String, Long> viewers = new HashMap<>(); // userId -> último heartbeat (ms)
+        private final List<RoomOp> pendingChat = new ArrayList<>();
+        private final Set<String> touched = new HashSet<>(); // Espectadores a guardar (ZADD)
+        private final Set<String> removed = new HashSet<>(); // Espectadores a quitar (ZREM)
+        private long peak;
+        private boolean peakDirty;
+        private long minute;
+        private long minuteMax;
+        private boolean minuteDirty;
+        private long lastActivity = System.currentTimeMillis();
+        private boolean closed; // Quitada del mapa: las escrituras van a una sala nueva
+
+        private void touch(String userId, long ts) {
+            viewers.put(userId, ts);
+            touched.add(userId);
+            removed.remove(userId);
+
+            long count = viewers.size();
+            if (count > peak) {
+                peak = count;
+                peakDirty = true;
+            }
+            long currentMinute = ts - (ts % 60_000L);
+            if (currentMinute != minute) {
+                minute = currentMinute;
+                minuteMax = 0;
+            }
+            if (count > minuteMax) {
+                minuteMax = count;
+                minuteDirty = true;
+            }
+        }
+
+        private synchronized RoomChanges takeChanges() {
+            Map<String, Long> touchedScores = new HashMap<>();
+            for (String userId : touched) {
+                Long lastSeen = viewers.get(userId);
+                if (lastSeen != null) {
+                    touchedScores.put(userId, lastSeen);
+                }
+            }
+            RoomChanges changes = new RoomChanges(new ArrayList<>(pendingChat), touchedScores,
+                    new HashSet<>(removed), peakDirty ? peak : 0, minute, minuteDirty ? minuteMax : 0);
+            pendingChat.clear();
+            touched.clear();
+            removed.clear();
+            peakDirty = false;
+            minuteDirty = false;
+            return changes;
+        }
+
+        private synchronized void restore(RoomChanges changes) {
+            pendingChat.addAll(0, changes.chat());
+            changes.touched().keySet().stream().filter(viewers::containsKey).forEach(touched::add);
+            changes.removed().stream().filter(userId -> !viewers.containsKey(userId)).forEach(removed::add);
+            peakDirty |= changes.peak() > 0;
+            minuteDirty |= changes.minuteMax() > 0 && changes.minute() == minute;
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package com.uade.tpo.marketplace.service;
 
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import com.uade.tpo.marketplace.entity.dto.LiveSummary;
 import com.uade.tpo.marketplace.entity.mongodb.Contenido;
-import com.uade.tpo.marketplace.entity.mongodb.Transaccion;
 import com.uade.tpo.marketplace.entity.mongodb.Transmision;
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
 import com.uade.tpo.marketplace.repository.mongodb.ContenidoRepository;
-import com.uade.tpo.marketplace.repository.mongodb.TransaccionRepository;
 import com.uade.tpo.marketplace.repository.mongodb.TransmisionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -22,41 +27,68 @@ import java.util.stream.Collectors;
 public class LiveService {
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final TransaccionRepository transaccionRepository;
     private final TransmisionRepository transmisionRepository;
     private final ContenidoRepository contenidoRepository;
     private final LogService logService;
+    private final LiveEventBus liveEventBus;
+    private final LivePresenceService livePresenceService;
+    private final LiveQuestionService liveQuestionService;
+    private final LiveArchiveService liveArchiveService;
+    private final ActiveLiveRegistry activeLiveRegistry;
+    private final LiveStatsCheckpointer liveStatsCheckpointer;
+    private final LiveRoomService liveRoomService;
+    private final RedisScripts redisScripts;
 
-    private static final String LIVE_CHAT_PREFIX = "live:comentarios:";
-    private static final String LIVE_VIEWERS_PREFIX = "live:viewers:";
-    private static final String LIVE_QUESTIONS_PREFIX = "live:preguntas:";
-    private static final String LIVE_DONATIONS_PREFIX = "live:donaciones:";
+    private static final String LIVE_CHAT_PREFIX = "live:chat:";
+    private static final String LIVE_STATS_PREFIX = "live:stats:";
+    private static final String LIVE_DONORS_PREFIX = "live:donors:";
+    private static final String STATS_DONATION_COUNT = "donationCount";
+    private static final String STATS_DONATION_TOTAL = "donationTotal";
+
+    // Chat en Redis Streams: campos tipados por entrada (ver scripts/live/chat_send.lua)
+    // y tope de seguridad del stream: el recorte normal lo hace LiveArchiveService (MINID)
+    // detrás de lo ya archivado, el tope solo actúa si el archivo se detiene
+    private static final String CHAT_FIELD_USER = "userId";
+    private static final String CHAT_FIELD_TEXT = "texto";
+    private static final long CHAT_STREAM_MAX_LENGTH = 100_000;
+    private static final int CHAT_PAGE_SIZE = 50;
 
     /**
      * Obtiene los mensajes del chat en vivo
-     * Usa Redis Streams para mensajería en tiempo real
+     * Usa Redis Streams (XRANGE / XREVRANGE) para mensajería en tiempo real
+     *
+     * @param liveId ID de la transmisión
+     * @param since ID de stream del último mensaje recibido por el cliente (opcional).
+     *              Si se informa, solo se devuelven los mensajes posteriores a ese cursor.
+     * @return Lista de mensajes en orden cronológico, cada uno con su "id" de stream
      */
-    public Object liveChat(String liveId) {
-        log.info("Obteniendo chat en vivo para transmisión {}", liveId);
+    public List<Map<String, Object>> liveChat(String liveId, String since) {
+        log.info("Obteniendo chat en vivo para transmisión {} (desde: {})", liveId, since);
         
         try {
             String chatKey = LIVE_CHAT_PREFIX + liveId;
-            
-            // Obtener últimos 50 mensajes del chat (usando List en Redis)
-            List<String> mensajes = redisTemplate.opsForList().range(chatKey, -50, -1);
+            StreamOperations<String, String, String> streamOps = redisTemplate.opsForStream();
+            
+            List<MapRecord<String, String, String>> records;
+            if (since != null && !since.isBlank()) {
+                // Catch-up: solo los mensajes que el cliente todavía no vio
+                records = streamOps.range(chatKey,
+                        Range.rightUnbounded(Range.Bound.exclusive(since)),
+                        Limit.limit().count(CHAT_PAGE_SIZE));
+            } else {
+                // Primera carga: últimos mensajes, luego se invierten a orden cronológico
+                records = streamOps.reverseRange(chatKey, Range.unbounded(),
+                        Limit.limit().count(CHAT_PAGE_SIZE));
+                if (records != null) {
+                    records = new ArrayList<>(records);
+                    Collections.reverse(records);
+                }
+            }
             
             List<Map<String, Object>> chatMessages = new ArrayList<>();
-            if (mensajes != null) {
-                for (String mensaje : mensajes) {
-                    // Parsear mensaje (formato: timestamp|userId|texto)
-                    String[] parts = mensaje.split("\\|", 3);
-                    if (parts.length == 3) {
-                        Map<String, Object> msg = new HashMap<>();
-                        msg.put("timestamp", parts[0]);
-                        msg.put("userId", parts[1]);
-                        msg.put("texto", parts[2]);
-                        chatMessages.add(msg);
-                    }
+            if (records != null) {
+                for (MapRecord<String, String, String> record : records) {
+                    chatMessages.add(toChatMessage(record));
                 }
             }
             
@@ -71,24 +103,31 @@ public class LiveService {
 
     /**
      * Envía un mensaje al chat en vivo
+     * El mensaje se agrega al stream con campos tipados (XADD con recorte
+     * aproximado MAXLEN ~) y se publica el evento en un único script atómico
      */
     public void sendChatMessage(String liveId, String userId, String mensaje) {
         log.info("Enviando mensaje al chat de transmisión {}", liveId);
         
         try {
-            String chatKey = LIVE_CHAT_PREFIX + liveId;
-            String timestamp = Instant.now().toString();
-            String fullMessage = timestamp + "|" + userId + "|" + mensaje;
-            
-            // Agregar mensaje a la lista (Redis List)
-            redisTemplate.opsForList().rightPush(chatKey, fullMessage);
+            // Modo salas con dueño: se aplica en memoria del nodo dueño (ver LiveRoomService)
+            if (liveRoomService.isEnabled()) {
+                liveRoomService.chat(liveId, userId, mensaje);
+                return;
+            }
             
-            // Limitar a últimos 100 mensajes
-            redisTemplate.opsForList().trim(chatKey, -100, -1);
+            String event = liveEventBus.encode(LiveEventMessage.builder()
+                    .type("CHAT")
+                    .liveId(liveId)
+                    .userId(userId)
+                    .text(mensaje)
+                    .build());
             
-            // Publicar evento en canal Pub/Sub para notificaciones en tiempo real
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "CHAT|" + userId + "|" + mensaje);
+            // XADD + contador + PUBLISH en un solo round trip (el ID del stream incluye el timestamp)
+            redisTemplate.execute(redisScripts.getChatSend(),
+                    List.of(LIVE_CHAT_PREFIX + liveId, LIVE_STATS_PREFIX + liveId),
+                    String.valueOf(CHAT_STREAM_MAX_LENGTH), userId, mensaje,
+                    LiveEventBus.CHANNEL_PREFIX + liveId, event);
             
             log.info("Mensaje enviado exitosamente");
             
@@ -97,33 +136,46 @@ public class LiveService {
         }
     }
 
+    /**
+     * Convierte una entrada del stream de chat al formato expuesto por la API
+     */
+    private Map<String, Object> toChatMessage(MapRecord<String, String, String> record) {
+        Map<String, String> fields = record.getValue();
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("id", record.getId().getValue());
+        msg.put("timestamp", Instant.ofEpochMilli(record.getId().getTimestamp()).toString());
+        msg.put("userId", fields.get(CHAT_FIELD_USER));
+        msg.put("texto", fields.get(CHAT_FIELD_TEXT));
+        return msg;
+    }
+
     /**
      * Registra una donación a un creador durante la transmisión
+     * La donación se encola en un Redis Stream (confirmación inmediata) y se
+     * persiste en MongoDB en lotes por DonationWriteBehindService
      */
-    public void donate(String liveId, String donorId, String creatorId, Double amount) {
+    public void donate(String liveId, String donorId, String donorName, String creatorId, Double amount) {
         log.info("Registrando donación de {} para transmisión {}", amount, liveId);
         
         try {
-            // Guardar transacción en MongoDB para persistencia
-            Transaccion transaccion = Transaccion.builder()
-                    .usuarioId(donorId)
-                    .creadorId(creatorId)
-                    .tipo("donacion")
-                    .monto(amount)
-                    .fecha(LocalDateTime.now())
-                    .metodoPago("online")
-                    .build();
-            
-            transaccionRepository.save(transaccion);
-            
-            // Registrar donación en Redis para estadísticas en tiempo real
-            String donationsKey = LIVE_DONATIONS_PREFIX + liveId;
-            redisTemplate.opsForList().rightPush(donationsKey, 
-                    donorId + "|" + amount + "|" + Instant.now());
-            
-            // Publicar evento de donación
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "DONATION|" + donorId + "|" + amount);
+            String event = liveEventBus.encode(LiveEventMessage.builder()
+                    .type("DONATION")
+                    .liveId(liveId)
+                    .userId(donorId)
+                    .userName(donorName)
+                    .amount(amount)
+                    .build());
+            
+            // El ID de donación es la clave de idempotencia (será el _id de la Transaccion)
+            String donationId = UUID.randomUUID().toString();
+            
+            // Encolar para persistencia, actualizar agregados (cantidad, total, ranking de donantes)
+            // y publicar el evento, de forma atómica
+            redisTemplate.execute(redisScripts.getDonationRecord(),
+                    List.of(LIVE_STATS_PREFIX + liveId, LIVE_DONORS_PREFIX + liveId,
+                            DonationWriteBehindService.QUEUE_KEY),
+                    donorId, String.valueOf(amount), LiveEventBus.CHANNEL_PREFIX + liveId, event,
+                    donationId, liveId, creatorId, String.valueOf(Instant.now().toEpochMilli()));
             
             log.info("Donación registrada exitosamente: ${}", amount);
             
@@ -135,59 +187,52 @@ public class LiveService {
 
     /**
      * Envía una pregunta al presentador
+     * La pregunta queda pendiente con 0 votos en la cola de Q&A
+     * @return ID de la pregunta, o null si no se pudo registrar
      */
-    public void sendQuestion(String liveId, String userId, String question) {
+    public String sendQuestion(String liveId, String userId, String userName, String question) {
         log.info("Enviando pregunta para transmisión {}", liveId);
         
         try {
-            String questionsKey = LIVE_QUESTIONS_PREFIX + liveId;
-            String timestamp = Instant.now().toString();
-            String fullQuestion = timestamp + "|" + userId + "|" + question;
-            
-            // Agregar pregunta a la lista
-            redisTemplate.opsForList().rightPush(questionsKey, fullQuestion);
-            
-            // Publicar evento de nueva pregunta
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "QUESTION|" + userId + "|" + question);
-            
-            log.info("Pregunta enviada exitosamente");
+            String questionId = liveQuestionService.ask(liveId, userId, userName, question);
+            log.info("Pregunta {} enviada exitosamente", questionId);
+            return questionId;
             
         } catch (Exception e) {
             log.error("Error al enviar pregunta: {}", e.getMessage(), e);
+            return null;
         }
     }
 
     /**
-     * Obtiene las preguntas pendientes para el presentador
+     * Obtiene una página de preguntas para el presentador
+     * @param estado PENDIENTE (por defecto) o RESPONDIDA
+     * @param sort Orden de las pendientes: "votes" (más votadas primero) o "time" (orden de llegada)
+     * @param cursor Cursor devuelto por la página anterior (opcional)
+     * @param limit Tamaño de página
+     * @return Mapa con "items" y "nextCursor"
      */
-    public List<Map<String, Object>> getQuestions(String liveId) {
-        log.info("Obteniendo preguntas para transmisión {}", liveId);
-        
-        try {
-            String questionsKey = LIVE_QUESTIONS_PREFIX + liveId;
-            List<String> preguntas = redisTemplate.opsForList().range(questionsKey, 0, -1);
-            
-            List<Map<String, Object>> questions = new ArrayList<>();
-            if (preguntas != null) {
-                for (String pregunta : preguntas) {
-                    String[] parts = pregunta.split("\\|", 3);
-                    if (parts.length == 3) {
-                        Map<String, Object> q = new HashMap<>();
-                        q.put("timestamp", parts[0]);
-                        q.put("userId", parts[1]);
-                        q.put("question", parts[2]);
-                        questions.add(q);
-                    }
-                }
-            }
-            
-            return questions;
-            
-        } catch (Exception e) {
-            log.error("Error al obtener preguntas: {}", e.getMessage(), e);
-            return Collections.emptyList();
-        }
+    public Map<String, Object> getQuestions(String liveId, String estado, String sort, String cursor, int limit) {
+        log.info("Obteniendo preguntas para transmisión {} (estado: {}, orden: {})", liveId, estado, sort);
+        return liveQuestionService.getPage(liveId, estado, sort, cursor, limit);
+    }
+
+    /**
+     * Vota una pregunta pendiente (un voto por usuario)
+     * @return Votos actualizados, LiveQuestionService.NOT_PENDING o LiveQuestionService.ALREADY_VOTED
+     */
+    public long upvoteQuestion(String liveId, String questionId, String userId) {
+        log.info("Usuario {} vota la pregunta {} de transmisión {}", userId, questionId, liveId);
+        return liveQuestionService.upvote(liveId, questionId, userId);
+    }
+
+    /**
+     * Marca una pregunta como respondida
+     * @return Votos finales de la pregunta o LiveQuestionService.NOT_PENDING
+     */
+    public long answerQuestion(String liveId, String questionId) {
+        log.info("Pregunta {} de transmisión {} respondida", questionId, liveId);
+        return liveQuestionService.answer(liveId, questionId);
     }
 
     /**
@@ -201,35 +246,17 @@ public class LiveService {
             Map<String, Object> events = new HashMap<>();
             
             // Obtener espectadores activos
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            Long viewersCount = redisTemplate.opsForSet().size(viewersKey);
-            events.put("viewersCount", viewersCount != null ? viewersCount : 0);
-            
-            // Obtener últimas donaciones
-            String donationsKey = LIVE_DONATIONS_PREFIX + liveId;
-            List<String> recentDonations = redisTemplate.opsForList().range(donationsKey, -10, -1);
-            events.put("recentDonations", recentDonations != null ? recentDonations.size() : 0);
-            
-            // Calcular total de donaciones
-            double totalDonations = 0.0;
-            if (recentDonations != null) {
-                for (String donation : recentDonations) {
-                    String[] parts = donation.split("\\|");
-                    if (parts.length >= 2) {
-                        try {
-                            totalDonations += Double.parseDouble(parts[1]);
-                        } catch (NumberFormatException e) {
-                            log.warn("Error al parsear donación: {}", donation);
-                        }
-                    }
-                }
-            }
-            events.put("totalDonations", totalDonations);
+            long viewersCount = livePresenceService.getViewersCount(liveId);
+            events.put("viewersCount", viewersCount);
+            
+            // Agregados de donaciones (una sola lectura O(1))
+            DonationTotals donations = getDonationTotals(liveId);
+            events.put("donationCount", donations.count());
+            events.put("totalDonations", donations.total());
             
-            // Obtener preguntas pendientes
-            String questionsKey = LIVE_QUESTIONS_PREFIX + liveId;
-            Long questionsCount = redisTemplate.opsForList().size(questionsKey);
-            events.put("pendingQuestions", questionsCount != null ? questionsCount : 0);
+            // Obtener preguntas pendientes (ZCARD)
+            long questionsCount = liveQuestionService.getPendingCount(liveId);
+            events.put("pendingQuestions", questionsCount);
             
             log.info("Eventos obtenidos: {} espectadores, {} preguntas", 
                     viewersCount, questionsCount);
@@ -244,17 +271,24 @@ public class LiveService {
 
     /**
      * Registra un espectador activo en la transmisión
+     * El espectador debe renovar su presencia con heartbeats periódicos
      */
-    public void joinLive(String liveId, String userId) {
+    public void joinLive(String liveId, String userId, String userName) {
         log.info("Usuario {} se unió a transmisión {}", userId, liveId);
         
         try {
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            redisTemplate.opsForSet().add(viewersKey, userId);
+            if (liveRoomService.isEnabled()) {
+                liveRoomService.join(liveId, userId, userName);
+                return;
+            }
             
-            // Publicar evento de nuevo espectador
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "JOIN|" + userId);
+            // Registrar presencia y publicar evento de nuevo espectador (un solo script)
+            livePresenceService.touch(liveId, userId, liveEventBus.encode(LiveEventMessage.builder()
+                    .type("JOIN")
+                    .liveId(liveId)
+                    .userId(userId)
+                    .userName(userName)
+                    .build()));
             
         } catch (Exception e) {
             log.error("Error al registrar espectador: {}", e.getMessage(), e);
@@ -268,18 +302,41 @@ public class LiveService {
         log.info("Usuario {} salió de transmisión {}", userId, liveId);
         
         try {
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            redisTemplate.opsForSet().remove(viewersKey, userId);
+            if (liveRoomService.isEnabled()) {
+                liveRoomService.leave(liveId, userId);
+                return;
+            }
             
-            // Publicar evento de salida
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "LEAVE|" + userId);
+            // Eliminar presencia y publicar evento de salida (un solo script)
+            livePresenceService.remove(liveId, userId, liveEventBus.encode(LiveEventMessage.builder()
+                    .type("LEAVE")
+                    .liveId(liveId)
+                    .userId(userId)
+                    .build()));
             
         } catch (Exception e) {
             log.error("Error al eliminar espectador: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Renueva la presencia de un espectador (heartbeat del cliente)
+     * Los espectadores sin heartbeat durante "live.presence.ttl-ms" se eliminan automáticamente
+     */
+    public void heartbeat(String liveId, String userId) {
+        log.debug("Heartbeat de usuario {} en transmisión {}", userId, liveId);
+        
+        try {
+            if (liveRoomService.isEnabled()) {
+                liveRoomService.heartbeat(liveId, userId);
+                return;
+            }
+            livePresenceService.touch(liveId, userId, null);
+        } catch (Exception e) {
+            log.error("Error al registrar heartbeat: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Inicia una nueva transmisión en vivo
      * Crea registro en MongoDB y configura estructuras en Redis
@@ -315,14 +372,13 @@ public class LiveService {
             Transmision saved = transmisionRepository.save(transmision);
             log.info("Transmisión creada con ID: {}", saved.getId());
             
-            // Inicializar estructuras en Redis
-            String viewersKey = LIVE_VIEWERS_PREFIX + saved.getId();
-            redisTemplate.opsForSet().add(viewersKey, "initialized");
-            redisTemplate.opsForSet().remove(viewersKey, "initialized");
-            
-            // Publicar evento de inicio
-            redisTemplate.convertAndSend("live:events:" + saved.getId(), 
-                    "START|" + creadorId + "|" + titulo);
+            // Registrar como activa y publicar evento de inicio (un solo script)
+            livePresenceService.markActive(saved.getId(), liveEventBus.encode(LiveEventMessage.builder()
+                    .type("START")
+                    .liveId(saved.getId())
+                    .userId(creadorId)
+                    .text(titulo)
+                    .build()));
             
             return saved;
             
@@ -353,43 +409,23 @@ public class LiveService {
                 return transmision;
             }
             
-            // Obtener estadísticas finales de Redis
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            Long currentViewers = redisTemplate.opsForSet().size(viewersKey);
-            
-            String questionsKey = LIVE_QUESTIONS_PREFIX + liveId;
-            Long totalQuestions = redisTemplate.opsForList().size(questionsKey);
-            
-            String chatKey = LIVE_CHAT_PREFIX + liveId;
-            Long totalMessages = redisTemplate.opsForList().size(chatKey);
-            
-            String donationsKey = LIVE_DONATIONS_PREFIX + liveId;
-            List<String> donations = redisTemplate.opsForList().range(donationsKey, 0, -1);
-            
-            // Calcular estadísticas de donaciones
-            int totalDonations = donations != null ? donations.size() : 0;
-            double totalAmount = 0.0;
-            if (donations != null) {
-                for (String donation : donations) {
-                    String[] parts = donation.split("\\|");
-                    if (parts.length >= 2) {
-                        try {
-                            totalAmount += Double.parseDouble(parts[1]);
-                        } catch (NumberFormatException e) {
-                            log.warn("Error al parsear donación: {}", donation);
-                        }
-                    }
-                }
+            // Estadísticas finales de Redis en un solo round trip; MongoDB ya tiene
+            // las del último checkpoint, esto solo agrega lo ocurrido desde entonces
+            // (el chat está recortado: el total sale del contador del script)
+            // En modo salas con dueño, primero se guarda lo pendiente de la sala en este nodo
+            if (liveRoomService.isEnabled()) {
+                liveRoomService.flushRoom(liveId);
             }
+            LiveStatsCheckpointer.RunningStats stats = liveStatsCheckpointer.read(liveId);
             
             // Actualizar transmisión con estadísticas finales
             transmision.setEstado("FINALIZADA");
             transmision.setFechaFin(LocalDateTime.now());
-            transmision.setEspectadoresMax(currentViewers != null ? currentViewers.intValue() : 0);
-            transmision.setTotalPreguntas(totalQuestions != null ? totalQuestions.intValue() : 0);
-            transmision.setTotalMensajes(totalMessages != null ? totalMessages.intValue() : 0);
-            transmision.setTotalDonaciones(totalDonations);
-            transmision.setMontoTotalDonaciones(totalAmount);
+            transmision.setEspectadoresMax((int) stats.peakViewers());
+            transmision.setTotalPreguntas((int) stats.questions());
+            transmision.setTotalMensajes((int) stats.messages());
+            transmision.setTotalDonaciones((int) stats.donations());
+            transmision.setMontoTotalDonaciones(stats.donationTotal());
             
             // Guardar como contenido permanente si se solicita
             if (guardarComoContenido) {
@@ -419,14 +455,24 @@ public class LiveService {
             Transmision saved = transmisionRepository.save(transmision);
             
             // Limpiar datos de Redis (opcional - mantener por 24h para análisis)
-            // redisTemplate.expire(viewersKey, 24, TimeUnit.HOURS);
             // redisTemplate.expire(questionsKey, 24, TimeUnit.HOURS);
             // redisTemplate.expire(chatKey, 24, TimeUnit.HOURS);
             
-            // Publicar evento de finalización
-            redisTemplate.convertAndSend("live:events:" + liveId, 
-                    "END|" + transmision.getCreadorId());
+            // Archivar lo que quede del chat y las preguntas (ahora o en el próximo ciclo de archivo)
+            try {
+                liveArchiveService.archiveLive(liveId);
+            } catch (Exception e) {
+                log.warn("No se pudo archivar la transmisión {} al finalizar: {}", liveId, e.getMessage());
+            }
+            
+            // Quitar de activas y publicar evento de finalización (un solo script)
+            livePresenceService.markInactive(liveId, liveEventBus.encode(LiveEventMessage.builder()
+                    .type("END")
+                    .liveId(liveId)
+                    .userId(transmision.getCreadorId())
+                    .build()));
             
+            liveStatsCheckpointer.forget(liveId);
             log.info("Transmisión finalizada exitosamente");
             return saved;
             
@@ -446,11 +492,14 @@ public class LiveService {
     }
 
     /**
-     * Obtiene todas las transmisiones activas
-     * @return Lista de transmisiones activas
+     * Obtiene las transmisiones activas desde el registro en memoria
+     * @param categoria Filtro por categoría (opcional)
+     * @param sort "viewers" o "recent"
+     * @param limit Máximo de resultados (0 = sin límite)
+     * @return Resúmenes de transmisiones activas con su número de espectadores
      */
-    public List<Transmision> getActiveTransmissions() {
-        return transmisionRepository.findAllActive();
+    public List<LiveSummary> getActiveTransmissions(String categoria, String sort, int limit) {
+        return activeLiveRegistry.list(categoria, sort, limit);
     }
 
     /**
@@ -469,12 +518,7 @@ public class LiveService {
      */
     public List<String> getActiveViewers(String liveId) {
         try {
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            var viewers = redisTemplate.opsForSet().members(viewersKey);
-            if (viewers == null) {
-                return Collections.emptyList();
-            }
-            return viewers.stream().collect(Collectors.toList());
+            return livePresenceService.getViewers(liveId);
         } catch (Exception e) {
             log.error("Error al obtener espectadores: {}", e.getMessage());
             return Collections.emptyList();
@@ -482,18 +526,72 @@ public class LiveService {
     }
 
     /**
-     * Obtiene el número de espectadores activos
+     * Obtiene el número de espectadores activos (ZCARD, sin recorrer miembros)
      * @param liveId ID de la transmisión
      * @return Número de espectadores
      */
     public long getViewersCount(String liveId) {
         try {
-            String viewersKey = LIVE_VIEWERS_PREFIX + liveId;
-            Long count = redisTemplate.opsForSet().size(viewersKey);
-            return count != null ? count : 0L;
+            return livePresenceService.getViewersCount(liveId);
         } catch (Exception e) {
             log.error("Error al contar espectadores: {}", e.getMessage());
             return 0L;
         }
     }
+
+    /**
+     * Obtiene estadísticas de concurrencia: espectadores actuales, pico y serie por minuto
+     * @param liveId ID de la transmisión
+     * @return Mapa con current, peak y concurrency
+     */
+    public Map<String, Object> getViewersStats(String liveId) {
+        Map<String, Object> stats = new HashMap<>();
+        try {
+            stats.put("current", livePresenceService.getViewersCount(liveId));
+            stats.put("peak", livePresenceService.getPeakViewers(liveId));
+            stats.put("concurrency", livePresenceService.getConcurrencySeries(liveId));
+        } catch (Exception e) {
+            log.error("Error al obtener estadísticas de espectadores: {}", e.getMessage());
+        }
+        return stats;
+    }
+
+    /**
+     * Obtiene el ranking de donantes de una transmisión (monto acumulado por donante)
+     * @param liveId ID de la transmisión
+     * @param limit Cantidad máxima de donantes
+     * @return Lista ordenada de mayor a menor monto
+     */
+    public List<Map<String, Object>> getDonationLeaderboard(String liveId, int limit) {
+        List<Map<String, Object>> leaderboard = new ArrayList<>();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> top = redisTemplate.opsForZSet()
+                    .reverseRangeWithScores(LIVE_DONORS_PREFIX + liveId, 0, Math.max(limit, 1) - 1);
+            if (top != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : top) {
+                    Map<String, Object> item = new HashMap<>();
+                    item.put("donorId", tuple.getValue());
+                    item.put("monto", tuple.getScore() != null ? tuple.getScore() : 0.0);
+                    leaderboard.add(item);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error al obtener ranking de donantes: {}", e.getMessage());
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Lee los agregados de donaciones mantenidos por el script de donación
+     */
+    private DonationTotals getDonationTotals(String liveId) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(LIVE_STATS_PREFIX + liveId,
+                List.of(STATS_DONATION_COUNT, STATS_DONATION_TOTAL));
+        long count = values.get(0) != null ? Long.parseLong(values.get(0).toString()) : 0L;
+        double total = values.get(1) != null ? Double.parseDouble(values.get(1).toString()) : 0.0;
+        return new DonationTotals(count, total);
+    }
+
+    private record DonationTotals(long count, double total) {
+    }
 }
@@ -0,0 +1,173 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.entity.mongodb.Transmision;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guardado periódico de las estadísticas de las transmisiones activas en MongoDB
+ *
+ * Cada "live.checkpoint.interval-ms":
+ * - Lee de Redis las estadísticas de todas las transmisiones activas en un
+ *   único pipeline (HMGET de live:stats:{liveId} + GET del contador de preguntas)
+ * - Descarta las que no cambiaron desde el último guardado de este nodo
+ * - Guarda el resto con un bulk write (una ida y vuelta a MongoDB): $max para
+ *   los contadores, así una lectura vieja nunca los hace retroceder, y $set de
+ *   "ultimoCheckpoint"
+ *
+ * Si el nodo se cae o la transmisión nunca se finaliza, MongoDB queda con los
+ * valores del último ciclo. Solo un nodo del cluster lo ejecuta por ciclo.
+ */
+@Slf4j
+@Service
+public class LiveStatsCheckpointer {
+
+    private static final String STATS_PREFIX = "live:stats:";
+    private static final String QUESTIONS_SEQ_PREFIX = "live:preguntas:seq:";
+    private static final String LOCK_KEY = "live:checkpoint:lock";
+    private static final List<String> STATS_FIELDS =
+            List.of("peakViewers", "messageCount", "donationCount", "donationTotal");
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final LivePresenceService livePresenceService;
+    private final String nodeId;
+    private final Duration lockTtl;
+
+    // Últimas estadísticas guardadas por transmisión (para escribir solo los cambios)
+    private final Map<String, RunningStats> lastWritten = new ConcurrentHashMap<>();
+
+    public LiveStatsCheckpointer(RedisTemplate<String, String> redisTemplate,
+                                 MongoTemplate mongoTemplate,
+                                 LivePresenceService livePresenceService,
+                                 LiveEventBus liveEventBus,
+                                 @Value("${live.checkpoint.interval-ms:30000}") long intervalMs) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.livePresenceService = livePresenceService;
+        this.nodeId = liveEventBus.getNodeId();
+        this.lockTtl = Duration.ofMillis(Math.max(intervalMs, 1000) * 2);
+    }
+
+    /**
+     * Estadísticas acumuladas de una transmisión
+     */
+    public record RunningStats(long peakViewers, long messages, long donations, double donationTotal,
+                               long questions) {
+    }
+
+    @Scheduled(initialDelayString = "${live.checkpoint.interval-ms:30000}",
+            fixedDelayString = "${live.checkpoint.interval-ms:30000}")
+    public void checkpoint() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, lockTtl);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            List<String> liveIds = new ArrayList<>(livePresenceService.getActiveLiveIds());
+            lastWritten.keySet().retainAll(liveIds);
+            if (liveIds.isEmpty()) {
+                return;
+            }
+
+            Map<String, RunningStats> stats = read(liveIds);
+            Map<String, RunningStats> changed = new LinkedHashMap<>();
+            stats.forEach((liveId, current) -> {
+                if (!current.equals(lastWritten.get(liveId))) {
+                    changed.put(liveId, current);
+                }
+            });
+            if (changed.isEmpty()) {
+                return;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Transmision.class);
+            LocalDateTime now = LocalDateTime.now();
+            changed.forEach((liveId, current) -> bulk.updateOne(
+                    Query.query(Criteria.where("_id").is(liveId).and("estado").is("ACTIVA")),
+                    toUpdate(current).set("ultimoCheckpoint", now)));
+            bulk.execute();
+
+            lastWritten.putAll(changed);
+            log.debug("Estadísticas de {} transmisiones guardadas", changed.size());
+        } catch (Exception e) {
+            log.error("Error al guardar estadísticas de transmisiones: {}", e.getMessage(), e);
+        } finally {
+            if (nodeId.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                redisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    /**
+     * Estadísticas actuales de una transmisión (un solo round trip a Redis)
+     */
+    public RunningStats read(String liveId) {
+        return read(List.of(liveId)).get(liveId);
+    }
+
+    /**
+     * Olvida el último guardado de una transmisión finalizada
+     */
+    public void forget(String liveId) {
+        lastWritten.remove(liveId);
+    }
+
+    /**
+     * Lee las estadísticas de varias transmisiones en un único pipeline
+     */
+    private Map<String, RunningStats> read(List<String> liveIds) {
+        byte[][] fields = STATS_FIELDS.stream()
+                .map(field -> field.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String liveId : liveIds) {
+                connection.hashCommands().hMGet((STATS_PREFIX + liveId).getBytes(StandardCharsets.UTF_8), fields);
+                connection.stringCommands().get((QUESTIONS_SEQ_PREFIX + liveId).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        Map<String, RunningStats> stats = new LinkedHashMap<>();
+        for (int i = 0; i < liveIds.size(); i++) {
+            List<?> values = (List<?>) results.get(i * 2);
+            Object questions = results.get(i * 2 + 1);
+            stats.put(liveIds.get(i), new RunningStats(
+                    asLong(values.get(0)),
+                    asLong(values.get(1)),
+                    asLong(values.get(2)),
+                    values.get(3) != null ? Double.parseDouble(values.get(3).toString()) : 0.0,
+                    asLong(questions)));
+        }
+        return stats;
+    }
+
+    private static Update toUpdate(RunningStats stats) {
+        return new Update()
+                .max("espectadoresMax", (int) stats.peakViewers())
+                .max("totalMensajes", (int) stats.messages())
+                .max("totalDonaciones", (int) stats.donations())
+                .max("montoTotalDonaciones", stats.donationTotal())
+                .max("totalPreguntas", (int) stats.questions());
+    }
+
+    private static long asLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
@@ -0,0 +1,407 @@
+package com.uade.tpo.marketplace.service;
+
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import com.uade.tpo.marketplace.entity.mongodb.MetricaContenido;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Series temporales de vistas y likes por contenido (minuto -> hora -> día)
+ *
+ * - Las vistas (en el flush de ViewIngestionService) y los likes suman sus
+ *   deltas en un HASH de Redis por minuto (analytics:rollup:minute:{inicio},
+ *   campos v:{contentId} y l:{contentId}, con TTL de 2 horas)
+ * - Cada "analytics.rollup.interval-ms" un solo nodo (lock en Redis) pasa los
+ *   minutos completos a la colección time-series metricas_minuto y luego resume
+ *   las horas y días completos en metricas_hora y metricas_dia (agregación
+ *   sobre el nivel anterior, nunca sobre los minutos para los días)
+ * - Cada nivel tiene su propio TTL (expireAfterSeconds de la colección)
+ * - Las horas y los días se alinean en la zona "analytics.rollup.zone" (un día
+ *   empieza a la medianoche local y puede durar 23 o 25 h con horario de verano)
+ *
+ * Los cursores (analytics:rollup:cursor) marcan hasta dónde se procesó cada
+ * nivel y solo avanzan después de guardar. Si el nodo cae entre el insert y el
+ * avance del cursor, ese intervalo puede quedar duplicado (las colecciones
+ * time-series no admiten índices únicos).
+ *
+ * La consulta de una serie usa el nivel más grueso que alcanza para el rango
+ * (hasta 6 h en minutos, hasta 31 días en horas, el resto en días) y completa el
+ * tramo aún no resumido con el nivel inferior.
+ */
+@Slf4j
+@Service
+public class MetricsRollupService {
+
+    private static final String MINUTE_PREFIX = "analytics:rollup:minute:";
+    private static final String CURSOR_KEY = "analytics:rollup:cursor";
+    private static final String LOCK_KEY = "analytics:rollup:lock";
+    private static final String VIEWS_FIELD = "v:";
+    private static final String LIKES_FIELD = "l:";
+    private static final long MINUTE_MS = 60_000;
+    private static final long MINUTE_TTL_SECONDS = 2 * 60 * 60;
+    private static final long GRACE_MS = 5_000; // Margen para pipelines de vistas en curso
+    private static final int MAX_PERIODS_PER_RUN = 60;
+
+    /**
+     * Niveles de la serie: colección, duración del intervalo y granularidad time-series
+     */
+    public enum Tier {
+        MINUTO("minuto", "metricas_minuto", ChronoUnit.MINUTES, TimeSeriesGranularity.MINUTES),
+        HORA("hora", "metricas_hora", ChronoUnit.HOURS, TimeSeriesGranularity.HOURS),
+        DIA("dia", "metricas_dia", ChronoUnit.DAYS, TimeSeriesGranularity.HOURS);
+
+        private final String id;
+        private final String collection;
+        private final ChronoUnit unit;
+        private final TimeSeriesGranularity granularity;
+
+        Tier(String id, String collection, ChronoUnit unit, TimeSeriesGranularity granularity) {
+            this.id = id;
+            this.collection = collection;
+            this.unit = unit;
+            this.granularity = granularity;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        private Tier finer() {
+            return this == DIA ? HORA : this == HORA ? MINUTO : null;
+        }
+
+        public static Optional<Tier> of(String id) {
+            return Arrays.stream(values()).filter(tier -> tier.id.equals(id)).findFirst();
+        }
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final String nodeId;
+    private final Duration lockTtl;
+    private final ZoneId zone;
+    private final Map<Tier, Duration> retention = new EnumMap<>(Tier.class);
+
+    public MetricsRollupService(RedisTemplate<String, String> redisTemplate,
+                                MongoTemplate mongoTemplate,
+                                LiveEventBus liveEventBus,
+                                @Value("${analytics.rollup.interval-ms:15000}") long intervalMs,
+                                @Value("${analytics.rollup.minute-retention-days:3}") long minuteRetentionDays,
+                                @Value("${analytics.rollup.hour-retention-days:90}") long hourRetentionDays,
+                                @Value("${analytics.rollup.day-retention-days:1095}") long dayRetentionDays,
+                                @Value("${analytics.rollup.zone:America/Argentina/Buenos_Aires}") String zone) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.nodeId = liveEventBus.getNodeId();
+        this.lockTtl = Duration.ofMillis(Math.max(intervalMs, 1000) * 4);
+        this.zone = ZoneId.of(zone);
+        retention.put(Tier.MINUTO, Duration.ofDays(minuteRetentionDays));
+        retention.put(Tier.HORA, Duration.ofDays(hourRetentionDays));
+        retention.put(Tier.DIA, Duration.ofDays(dayRetentionDays));
+    }
+
+    // ========== REGISTRO DE DELTAS ==========
+
+    /**
+     * Clave del minuto actual (para sumar vistas dentro de otro pipeline)
+     */
+    public String currentMinuteKey() {
+        long now = System.currentTimeMillis();
+        return MINUTE_PREFIX + (now - now % MINUTE_MS);
+    }
+
+    public long minuteTtlSeconds() {
+        return MINUTE_TTL_SECONDS;
+    }
+
+    public static String viewsField(String contentId) {
+        return VIEWS_FIELD + contentId;
+    }
+
+    /**
+     * Suma un like (o lo resta, con delta negativo) al minuto actual
+     */
+    public void recordLike(String contentId, int delta) {
+        try {
+            String key = currentMinuteKey();
+            redisTemplate.opsForHash().increment(key, LIKES_FIELD + contentId, delta);
+            redisTemplate.expire(key, Duration.ofSeconds(MINUTE_TTL_SECONDS));
+        } catch (Exception e) {
+            log.error("Error al registrar like en series temporales: {}", e.getMessage(), e);
+        }
+    }
+
+    // ========== COLECCIONES ==========
+
+    /**
+     * Crea las colecciones time-series si no existen
+     * El TTL se fija al crearlas; para cambiarlo después hace falta collMod
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureCollections() {
+        for (Tier tier : Tier.values()) {
+            try {
+                if (!mongoTemplate.collectionExists(tier.collection)) {
+                    mongoTemplate.getDb().createCollection(tier.collection, new CreateCollectionOptions()
+                            .timeSeriesOptions(new TimeSeriesOptions("ts")
+                                    .metaField("contenidoId")
+                                    .granularity(tier.granularity))
+                            .expireAfter(retention.get(tier).toSeconds(), TimeUnit.SECONDS));
+                    log.info("Colección time-series {} creada", tier.collection);
+                }
+                mongoTemplate.indexOps(tier.collection).ensureIndex(new Index()
+                        .on("contenidoId", Sort.Direction.ASC)
+                        .on("ts", Sort.Direction.ASC));
+            } catch (Exception e) {
+                log.error("Error al crear la colección {}: {}", tier.collection, e.getMessage(), e);
+            }
+        }
+    }
+
+    // ========== ROLLUP ==========
+
+    @Scheduled(initialDelayString = "${analytics.rollup.interval-ms:15000}",
+            fixedDelayString = "${analytics.rollup.interval-ms:15000}")
+    public void rollup() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, lockTtl);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            long minutesDone = rollupMinutes();
+            long hoursDone = downsample(Tier.HORA, minutesDone);
+            downsample(Tier.DIA, hoursDone);
+        } catch (Exception e) {
+            log.error("Error al consolidar series temporales: {}", e.getMessage(), e);
+        } finally {
+            if (nodeId.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                redisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    /**
+     * Pasa los minutos completos de Redis a metricas_minuto
+     * @return Fin (exclusivo) de los minutos ya guardados
+     */
+    private long rollupMinutes() {
+        long now = System.currentTimeMillis() - GRACE_MS;
+        long complete = now - now % MINUTE_MS;
+        // Los minutos más viejos que el TTL ya no están en Redis
+        long oldest = complete - MINUTE_TTL_SECONDS * 1000;
+        long cursor = Math.max(readCursors().getOrDefault(Tier.MINUTO, complete - 60 * MINUTE_MS), oldest);
+
+        int processed = 0;
+        while (cursor < complete && processed++ < MAX_PERIODS_PER_RUN) {
+            String key = MINUTE_PREFIX + cursor;
+            Map<Object, Object> counters = redisTemplate.opsForHash().entries(key);
+            List<MetricaContenido> points = toPoints(cursor, counters);
+            if (!points.isEmpty()) {
+                mongoTemplate.insert(points, Tier.MINUTO.collection);
+            }
+            cursor += MINUTE_MS;
+            saveCursor(Tier.MINUTO, cursor);
+            redisTemplate.delete(key);
+        }
+        return cursor;
+    }
+
+    /**
+     * Resume los intervalos completos del nivel inferior en el nivel indicado
+     * @param sourceDone Fin (exclusivo) de lo ya guardado en el nivel inferior
+     * @return Fin (exclusivo) de lo ya guardado en este nivel
+     */
+    private long downsample(Tier tier, long sourceDone) {
+        long cursor = readCursors().getOrDefault(tier, floor(tier, sourceDone));
+        int processed = 0;
+        // El fin se calcula desde el inicio del intervalo que contiene al cursor: un
+        // cursor guardado con otra zona cierra un intervalo parcial y queda alineado
+        long end = next(tier, floor(tier, cursor));
+        while (end <= sourceDone && processed++ < MAX_PERIODS_PER_RUN) {
+            List<MetricaContenido> points = aggregate(tier.finer(), cursor, end);
+            if (!points.isEmpty()) {
+                mongoTemplate.insert(points, tier.collection);
+            }
+            cursor = end;
+            saveCursor(tier, cursor);
+            end = next(tier, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Totales por contenido de un rango del nivel indicado (un punto por contenido con ts = from)
+     */
+    private List<MetricaContenido> aggregate(Tier source, long from, long to) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("ts").gte(new Date(from)).lt(new Date(to))),
+                Aggregation.group("contenidoId").sum("vistas").as("vistas").sum("likes").as("likes"));
+        List<MetricaContenido> points = new ArrayList<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, source.collection, Document.class)) {
+            long vistas = asLong(result.get("vistas"));
+            long likes = asLong(result.get("likes"));
+            if (vistas != 0 || likes != 0) {
+                points.add(MetricaContenido.builder()
+                        .ts(Instant.ofEpochMilli(from))
+                        .contenidoId(result.getString("_id"))
+                        .vistas(vistas)
+                        .likes(likes)
+                        .build());
+            }
+        }
+        return points;
+    }
+
+    private static List<MetricaContenido> toPoints(long minute, Map<Object, Object> counters) {
+        Map<String, MetricaContenido> points = new HashMap<>();
+        counters.forEach((field, value) -> {
+            String name = field.toString();
+            boolean views = name.startsWith(VIEWS_FIELD);
+            if (!views && !name.startsWith(LIKES_FIELD)) {
+                return;
+            }
+            String contentId = name.substring(2);
+            MetricaContenido point = points.computeIfAbsent(contentId, id -> MetricaContenido.builder()
+                    .ts(Instant.ofEpochMilli(minute))
+                    .contenidoId(id)
+                    .build());
+            if (views) {
+                point.setVistas(point.getVistas() + asLong(value));
+            } else {
+                point.setLikes(point.getLikes() + asLong(value));
+            }
+        });
+        return new ArrayList<>(points.values());
+    }
+
+    // ========== CONSULTA ==========
+
+    /**
+     * Serie de vistas y likes de un contenido (los intervalos sin actividad no se incluyen)
+     * @param tier Nivel pedido; null = el más grueso que alcanza para el rango
+     */
+    public Map<String, Object> getSeries(String contentId, Instant from, Instant to, Tier tier) {
+        Tier target = tier != null ? tier : pick(from, to);
+        TreeMap<Long, long[]> points = new TreeMap<>();
+        // Desde el inicio del intervalo que contiene a "from", para no perder el primero
+        collect(contentId, floor(target, from.toEpochMilli()), to.toEpochMilli(), target, target,
+                readCursors(), points);
+
+        List<Map<String, Object>> series = new ArrayList<>(points.size());
+        points.forEach((ts, values) -> {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("ts", Instant.ofEpochMilli(ts).toString());
+            point.put("vistas", values[0]);
+            point.put("likes", values[1]);
+            series.add(point);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("contenidoId", contentId);
+        result.put("granularidad", target.id);
+        result.put("desde", from.toString());
+        result.put("hasta", to.toString());
+        result.put("puntos", series);
+        return result;
+    }
+
+    /**
+     * Nivel más grueso que alcanza para el rango, dentro de la retención de cada nivel
+     */
+    private Tier pick(Instant from, Instant to) {
+        Duration range = Duration.between(from, to);
+        Instant now = Instant.now();
+        if (range.compareTo(Duration.ofHours(6)) <= 0 && !from.isBefore(now.minus(retention.get(Tier.MINUTO)))) {
+            return Tier.MINUTO;
+        }
+        if (range.compareTo(Duration.ofDays(31)) <= 0 && !from.isBefore(now.minus(retention.get(Tier.HORA)))) {
+            return Tier.HORA;
+        }
+        return Tier.DIA;
+    }
+
+    /**
+     * Lee el rango del nivel hasta donde está resumido y completa el resto con el
+     * nivel inferior, agrupando siempre en intervalos del nivel pedido
+     */
+    private void collect(String contentId, long from, long to, Tier tier, Tier target,
+                         Map<Tier, Long> cursors, TreeMap<Long, long[]> points) {
+        long end = Math.max(from, Math.min(to, cursors.getOrDefault(tier, to)));
+        if (end > from) {
+            Query query = Query.query(Criteria.where("contenidoId").is(contentId)
+                            .and("ts").gte(new Date(from)).lt(new Date(end)))
+                    .with(Sort.by(Sort.Direction.ASC, "ts"));
+            for (MetricaContenido point : mongoTemplate.find(query, MetricaContenido.class, tier.collection)) {
+                long ts = point.getTs().toEpochMilli();
+                long[] values = points.computeIfAbsent(floor(target, ts), t -> new long[2]);
+                values[0] += point.getVistas();
+                values[1] += point.getLikes();
+            }
+        }
+        if (end < to && tier.finer() != null) {
+            collect(contentId, end, to, tier.finer(), target, cursors, points);
+        }
+    }
+
+    // ========== INTERVALOS ==========
+
+    /**
+     * Inicio del intervalo del nivel que contiene al instante, en la zona configurada
+     */
+    long floor(Tier tier, long epochMs) {
+        return Instant.ofEpochMilli(epochMs).atZone(zone).truncatedTo(tier.unit).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Inicio del intervalo siguiente (para días, la próxima medianoche local)
+     */
+    long next(Tier tier, long start) {
+        return Instant.ofEpochMilli(start).atZone(zone).plus(1, tier.unit).toInstant().toEpochMilli();
+    }
+
+    // ========== CURSORES ==========
+
+    private Map<Tier, Long> readCursors() {
+        List<Object> values = redisTemplate.opsForHash().multiGet(CURSOR_KEY,
+                Arrays.stream(Tier.values()).map(tier -> (Object) tier.id).toList());
+        Map<Tier, Long> cursors = new EnumMap<>(Tier.class);
+        for (int i = 0; i < Tier.values().length; i++) {
+            if (values.get(i) != null) {
+                cursors.put(Tier.values()[i], Long.parseLong(values.get(i).toString()));
+            }
+        }
+        return cursors;
+    }
+
+    private void saveCursor(Tier tier, long cursor) {
+        redisTemplate.opsForHash().put(CURSOR_KEY, tier.id, String.valueOf(cursor));
+    }
+
+    private static long asLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+}
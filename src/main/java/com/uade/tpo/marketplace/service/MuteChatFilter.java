@@ -0,0 +1,123 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Usuarios silenciados por transmisión
+ *
+ * Las listas se mantienen en memoria en cada nodo. Silenciar o quitar el
+ * silencio publica un evento MUTE / UNMUTE en "live:events:{liveId}" para que
+ * todos los nodos actualicen su lista; al finalizar la transmisión se descarta.
+ * Un nodo que arranca después no conoce los silencios anteriores.
+ */
+@Slf4j
+@Component
+@Order(0)
+@RequiredArgsConstructor
+public class MuteChatFilter implements ChatModerationFilter {
+
+    private final LiveEventBus liveEventBus;
+
+    // liveId -> userId -> silenciado hasta (epoch ms)
+    private final Map<String, Map<String, Long>> mutes = new ConcurrentHashMap<>();
+
+    @Override
+    public ModerationResult check(String liveId, String userId, String text) {
+        Map<String, Long> liveMutes = mutes.get(liveId);
+        if (liveMutes == null || userId == null) {
+            return ModerationResult.allow(text);
+        }
+        Long until = liveMutes.get(userId);
+        if (until != null && until > System.currentTimeMillis()) {
+            return ModerationResult.reject("MUTED");
+        }
+        return ModerationResult.allow(text);
+    }
+
+    /**
+     * Silencia a un usuario en la transmisión durante "durationMs"
+     */
+    public void mute(String liveId, String userId, long durationMs) {
+        long until = Instant.now().toEpochMilli() + durationMs;
+        apply(liveId, userId, until);
+        liveEventBus.publish(LiveEventMessage.builder()
+                .type("MUTE")
+                .liveId(liveId)
+                .userId(userId)
+                .mutedUntil(until)
+                .build());
+        log.info("Usuario {} silenciado en live {} hasta {}", userId, liveId, Instant.ofEpochMilli(until));
+    }
+
+    public void unmute(String liveId, String userId) {
+        apply(liveId, userId, null);
+        liveEventBus.publish(LiveEventMessage.builder()
+                .type("UNMUTE")
+                .liveId(liveId)
+                .userId(userId)
+                .build());
+    }
+
+    /**
+     * Usuarios silenciados vigentes de una transmisión (userId -> hasta)
+     */
+    public Map<String, Long> getMutes(String liveId) {
+        long now = System.currentTimeMillis();
+        Map<String, Long> active = new ConcurrentHashMap<>();
+        mutes.getOrDefault(liveId, Map.of()).forEach((userId, until) -> {
+            if (until > now) {
+                active.put(userId, until);
+            }
+        });
+        return active;
+    }
+
+    @EventListener
+    public void onLiveEvent(LiveEventMessage event) {
+        switch (event.getType()) {
+            case "MUTE" -> {
+                if (event.getMutedUntil() != null) {
+                    apply(event.getLiveId(), event.getUserId(), event.getMutedUntil());
+                }
+            }
+            case "UNMUTE" -> apply(event.getLiveId(), event.getUserId(), null);
+            case "END" -> mutes.remove(event.getLiveId());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Quita los silencios vencidos
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        mutes.values().forEach(liveMutes -> liveMutes.values().removeIf(until -> until <= now));
+        mutes.values().removeIf(Map::isEmpty);
+    }
+
+    private void apply(String liveId, String userId, Long until) {
+        if (liveId == null || userId == null) {
+            return;
+        }
+        if (until == null) {
+            Map<String, Long> liveMutes = mutes.get(liveId);
+            if (liveMutes != null) {
+                liveMutes.remove(userId);
+            }
+            return;
+        }
+        mutes.computeIfAbsent(liveId, id -> new ConcurrentHashMap<>()).put(userId, until);
+    }
+}
@@ -0,0 +1,172 @@
+package com.uade.tpo.marketplace.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Contenidos en tendencia con decaimiento temporal
+ *
+ * La actividad se acumula en rankings por bucket de tiempo
+ * (trending:bucket:{inicioDelBucket}, de "analytics.trending.bucket-ms"): cada
+ * vista suma 1 y cada like "analytics.trending.like-weight". Los buckets expiran
+ * solos al superar la ventana más larga.
+ *
+ * Cada ventana (1h, 24h, 7d) tiene su resultado precalculado en
+ * trending:result:{ventana}: un ZUNIONSTORE de los buckets de la ventana con peso
+ * 0.5^(antigüedad / vida media), con vida media de un cuarto de la ventana. Se
+ * recalcula en un único pipeline cada cierto tiempo según la ventana (las largas
+ * cambian más despacio) y solo en un nodo; las consultas solo leen el resultado.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    private static final String BUCKET_PREFIX = "trending:bucket:";
+    private static final String RESULT_PREFIX = "trending:result:";
+    private static final String REFRESH_PREFIX = "trending:refresh:";
+    private static final int RESULT_SIZE = 1000;
+
+    /**
+     * Ventanas disponibles: duración y cada cuánto se recalcula el resultado
+     */
+    private enum Window {
+        HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(1)),
+        DAY("24h", Duration.ofDays(1), Duration.ofMinutes(10)),
+        WEEK("7d", Duration.ofDays(7), Duration.ofHours(1));
+
+        private final String id;
+        private final Duration length;
+        private final Duration refresh;
+
+        Window(String id, Duration length, Duration refresh) {
+            this.id = id;
+            this.length = length;
+            this.refresh = refresh;
+        }
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final long bucketMs;
+    private final double likeWeight;
+
+    public TrendingService(RedisTemplate<String, String> redisTemplate,
+                           @Value("${analytics.trending.bucket-ms:600000}") long bucketMs,
+                           @Value("${analytics.trending.like-weight:5}") double likeWeight) {
+        this.redisTemplate = redisTemplate;
+        this.bucketMs = Math.max(60_000, bucketMs);
+        this.likeWeight = likeWeight;
+    }
+
+    /**
+     * Clave del bucket actual (para sumar vistas dentro de otro pipeline)
+     */
+    public String currentBucketKey() {
+        long now = System.currentTimeMillis();
+        return BUCKET_PREFIX + (now - now % bucketMs);
+    }
+
+    /**
+     * TTL de un bucket: la ventana más larga más un bucket
+     */
+    public long bucketTtlSeconds() {
+        return (Window.WEEK.length.toMillis() + bucketMs) / 1000;
+    }
+
+    /**
+     * Suma un like (o lo resta, con delta negativo) al bucket actual
+     */
+    public void recordLike(String contentId, int delta) {
+        try {
+            String key = currentBucketKey();
+            redisTemplate.opsForZSet().incrementScore(key, contentId, likeWeight * delta);
+            redisTemplate.expire(key, Duration.ofSeconds(bucketTtlSeconds()));
+        } catch (Exception e) {
+            log.error("Error al registrar like en tendencias: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean supports(String window) {
+        return find(window).isPresent();
+    }
+
+    /**
+     * Top de la ventana (resultado precalculado)
+     */
+    public Set<ZSetOperations.TypedTuple<String>> top(String window, int limit) {
+        Window w = find(window).orElseThrow(() -> new IllegalArgumentException("Ventana inválida: " + window));
+        return redisTemplate.opsForZSet().reverseRangeWithScores(RESULT_PREFIX + w.id, 0, limit - 1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshOnStartup() {
+        refresh();
+    }
+
+    /**
+     * Recalcula las ventanas cuyo resultado venció
+     * La marca trending:refresh:{ventana} (SET NX con TTL = intervalo de la ventana)
+     * hace que solo un nodo la recalcule por intervalo
+     */
+    @Scheduled(fixedDelayString = "${analytics.trending.check-interval-ms:30000}")
+    public void refresh() {
+        for (Window window : Window.values()) {
+            try {
+                Boolean due = redisTemplate.opsForValue().setIfAbsent(
+                        REFRESH_PREFIX + window.id, String.valueOf(System.currentTimeMillis()), window.refresh);
+                if (Boolean.TRUE.equals(due)) {
+                    compute(window);
+                }
+            } catch (Exception e) {
+                log.error("Error al calcular tendencias de {}: {}", window.id, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * ZUNIONSTORE ponderado de los buckets de la ventana, recorte al top y TTL,
+     * todo en un único pipeline
+     */
+    private void compute(Window window) {
+        long now = System.currentTimeMillis();
+        long current = now - now % bucketMs;
+        int buckets = (int) Math.ceil((double) window.length.toMillis() / bucketMs);
+        double halfLifeMs = window.length.toMillis() / 4.0;
+
+        byte[][] keys = new byte[buckets][];
+        double[] weights = new double[buckets];
+        for (int i = 0; i < buckets; i++) {
+            long start = current - i * bucketMs;
+            // Antigüedad medida al centro del bucket (el actual cuenta casi completo)
+            double age = Math.max(0, now - (start + bucketMs / 2.0));
+            keys[i] = (BUCKET_PREFIX + start).getBytes(StandardCharsets.UTF_8);
+            weights[i] = Math.pow(0.5, age / halfLifeMs);
+        }
+
+        byte[] result = (RESULT_PREFIX + window.id).getBytes(StandardCharsets.UTF_8);
+        long resultTtlSeconds = Math.max(window.refresh.toSeconds() * 5, 3600);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zUnionStore(result, Aggregate.SUM, Weights.of(weights), keys);
+            connection.zSetCommands().zRemRange(result, 0, -(RESULT_SIZE + 1));
+            connection.keyCommands().expire(result, resultTtlSeconds);
+            return null;
+        });
+        log.debug("Tendencias de {} recalculadas con {} buckets", window.id, buckets);
+    }
+
+    private static Optional<Window> find(String window) {
+        return Arrays.stream(Window.values()).filter(w -> w.id.equals(window)).findFirst();
+    }
+}
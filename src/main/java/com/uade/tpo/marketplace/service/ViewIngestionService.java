@@ -0,0 +1,369 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ingesta de vistas de contenidos con agregación en memoria
+ *
+ * Con "analytics.views.buffered" cada vista solo incrementa un LongAdder por
+ * contenido (sin pasar por Redis). Cada "analytics.views.flush-interval-ms" los
+ * deltas acumulados se guardan en un único pipeline:
+ * - ZINCRBY en ranking:vistas:global y en los rankings por dimensión del
+ *   contenido (ranking:vistas:categoria:{c}, ranking:vistas:tipo:{t},
+ *   ranking:vistas:region:{r})
+ * - ZINCRBY en el bucket de tendencias actual (ver TrendingService)
+ * - HINCRBY en el minuto actual de las series temporales (ver MetricsRollupService)
+ * - INCRBY en analytics:content:{contentId}
+ * - HINCRBY "vistas" en analytics:creator:{creatorId} (contador agregado del
+ *   creador, resuelto con ContentMetaCache)
+ *
+ * Así Redis recibe pocos comandos por contenido distinto e intervalo, no por vista.
+ * La memoria está acotada por "analytics.views.max-pending": si se alcanza, las
+ * vistas de contenidos nuevos se descartan (y se cuentan en el log) para que la
+ * petición nunca espere a Redis. Al apagar el nodo se guardan los deltas
+ * pendientes; si el nodo se cae se pierde el último intervalo.
+ *
+ * Una vista solo toma el contador existente e incrementa (sin locks del mapa).
+ * El flush quita con remove(clave, contador) los contadores sin vistas durante
+ * IDLE_FLUSHES_BEFORE_RELEASE flushes seguidos y los drena una vez más en el
+ * flush siguiente, así una vista que tomó el contador justo antes de quitarlo
+ * también se guarda. Solo se reintenta un flush si Redis
+ * no estaba disponible: con otros errores el pipeline pudo aplicarse en parte y
+ * reintentarlo contaría vistas dos veces.
+ *
+ * registerUnique cuenta solo las vistas calificadas: una por espectador y
+ * contenido cada "analytics.views.dedup-window-ms". Se usa un SET de Redis por
+ * bucket de tiempo (analytics:views:seen:{bucket}, con TTL de dos buckets) y se
+ * consulta también el bucket anterior, así una vista repetida nunca cuenta antes
+ * de una ventana completa.
+ */
+@Slf4j
+@Service
+public class ViewIngestionService {
+
+    public static final String VIEWS_KEY = "ranking:vistas:global";
+    public static final String CONTENT_VIEWS_PREFIX = "analytics:content:";
+    public static final String CREATOR_STATS_PREFIX = "analytics:creator:";
+    public static final String CATEGORY_RANKING_PREFIX = "ranking:vistas:categoria:";
+    public static final String TYPE_RANKING_PREFIX = "ranking:vistas:tipo:";
+    public static final String REGION_RANKING_PREFIX = "ranking:vistas:region:";
+    private static final String LIKES_RANKING_KEY = "ranking:likes:global";
+    private static final String DIMENSIONS_INIT_KEY = "ranking:vistas:dimensiones:init";
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final String SEEN_PREFIX = "analytics:views:seen:";
+    private static final int IDLE_FLUSHES_BEFORE_RELEASE = 50;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScripts redisScripts;
+    private final ContentMetaCache contentMetaCache;
+    private final TrendingService trendingService;
+    private final MetricsRollupService metricsRollupService;
+    private final boolean buffered;
+    private final int maxPending;
+    private final long dedupWindowMs;
+
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    // Solo los usa flush(): flushes seguidos sin vistas por contenido y contadores
+    // quitados en el último flush (se drenan una vez más en el siguiente)
+    private final Map<String, Integer> idleFlushes = new HashMap<>();
+    private Map<String, LongAdder> retired = Collections.emptyMap();
+
+    public ViewIngestionService(RedisTemplate<String, String> redisTemplate,
+                                RedisScripts redisScripts,
+                                ContentMetaCache contentMetaCache,
+                                TrendingService trendingService,
+                                MetricsRollupService metricsRollupService,
+                                @Value("${analytics.views.buffered:true}") boolean buffered,
+                                @Value("${analytics.views.max-pending:50000}") int maxPending,
+                                @Value("${analytics.views.dedup-window-ms:1800000}") long dedupWindowMs) {
+        this.redisTemplate = redisTemplate;
+        this.redisScripts = redisScripts;
+        this.contentMetaCache = contentMetaCache;
+        this.trendingService = trendingService;
+        this.metricsRollupService = metricsRollupService;
+        this.buffered = buffered;
+        this.maxPending = Math.max(1, maxPending);
+        this.dedupWindowMs = Math.max(1000, dedupWindowMs);
+    }
+
+    /**
+     * Registra una vista solo si el espectador no vio el contenido en la ventana actual
+     * Si Redis falla al deduplicar, la vista se cuenta igual
+     * @param viewer Usuario, sesión o dirección del cliente
+     * @return true si la vista contó
+     */
+    public boolean registerUnique(String contentId, String viewer) {
+        boolean qualified = true;
+        try {
+            long bucket = System.currentTimeMillis() / dedupWindowMs;
+            Long result = redisTemplate.execute(redisScripts.getViewDedup(),
+                    List.of(SEEN_PREFIX + bucket, SEEN_PREFIX + (bucket - 1)),
+                    contentId + "|" + viewer, String.valueOf(dedupWindowMs * 2 / 1000));
+            qualified = result == null || result == 1L;
+        } catch (Exception e) {
+            log.error("Error al deduplicar vista de {}: {}", contentId, e.getMessage(), e);
+        }
+        if (qualified) {
+            register(contentId);
+        }
+        return qualified;
+    }
+
+    /**
+     * Registra una vista: se acumula en memoria o se escribe directo en Redis
+     */
+    public void register(String contentId) {
+        if (!buffered) {
+            applyViewDeltas(Map.of(contentId, 1L));
+            return;
+        }
+        LongAdder adder = pending.get(contentId);
+        if (adder == null) {
+            if (pending.size() >= maxPending) {
+                // Buffer lleno: no se agregan contenidos nuevos
+                dropped.increment();
+                return;
+            }
+            adder = pending.computeIfAbsent(contentId, id -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * Guarda en Redis los deltas acumulados del intervalo
+     */
+    @Scheduled(fixedDelayString = "${analytics.views.flush-interval-ms:200}")
+    public synchronized void flush() {
+        long droppedViews = dropped.sumThenReset();
+        if (droppedViews > 0) {
+            log.warn("{} vistas descartadas con el buffer lleno (analytics.views.max-pending={})",
+                    droppedViews, maxPending);
+        }
+
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        // Vistas que llegaron a contadores ya quitados en el flush anterior
+        retired.forEach((contentId, adder) -> {
+            long late = adder.sumThenReset();
+            if (late != 0) {
+                deltas.merge(contentId, late, Long::sum);
+            }
+        });
+        Map<String, LongAdder> removed = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+                idleFlushes.remove(entry.getKey());
+            } else if (idleFlushes.merge(entry.getKey(), 1, Integer::sum) >= IDLE_FLUSHES_BEFORE_RELEASE
+                    && pending.remove(entry.getKey(), adder)) {
+                // Contenido sin vistas hace tiempo: se libera el contador
+                removed.put(entry.getKey(), adder);
+                idleFlushes.remove(entry.getKey());
+            }
+        }
+        retired = removed;
+        if (idleFlushes.size() > pending.size()) {
+            // Contenidos eliminados (removeContent) mientras estaban inactivos
+            idleFlushes.keySet().retainAll(pending.keySet());
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            applyViewDeltas(deltas);
+            log.debug("Vistas de {} contenidos guardadas", deltas.size());
+        } catch (RedisConnectionFailureException e) {
+            // Sin conexión no se aplicó ningún comando: los deltas quedan para el próximo flush
+            log.warn("Redis no disponible, vistas de {} contenidos pendientes: {}", deltas.size(), e.getMessage());
+            deltas.forEach((contentId, delta) ->
+                    pending.computeIfAbsent(contentId, id -> new LongAdder()).add(delta));
+        } catch (Exception e) {
+            log.error("Error al guardar vistas de {} contenidos (no se reintentan): {}",
+                    deltas.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Suma los deltas de vistas en Redis en un único pipeline
+     * (ranking global, contador del contenido y contador agregado del creador)
+     */
+    public void applyViewDeltas(Map<String, Long> deltas) {
+        Map<String, ContentMetaCache.ContentMeta> metas = contentMetaCache.resolve(deltas.keySet());
+        Map<String, Long> creatorDeltas = new HashMap<>();
+        deltas.forEach((contentId, delta) -> {
+            ContentMetaCache.ContentMeta meta = metas.get(contentId);
+            if (meta != null && meta.creadorId() != null) {
+                creatorDeltas.merge(meta.creadorId(), delta, Long::sum);
+            }
+        });
+
+        byte[] viewsKey = VIEWS_KEY.getBytes(StandardCharsets.UTF_8);
+        byte[] viewsField = "vistas".getBytes(StandardCharsets.UTF_8);
+        byte[] trendingKey = trendingService.currentBucketKey().getBytes(StandardCharsets.UTF_8);
+        byte[] minuteKey = metricsRollupService.currentMinuteKey().getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            deltas.forEach((contentId, delta) -> {
+                byte[] member = contentId.getBytes(StandardCharsets.UTF_8);
+                connection.zSetCommands().zIncrBy(viewsKey, delta, member);
+                connection.zSetCommands().zIncrBy(trendingKey, delta, member);
+                connection.hashCommands().hIncrBy(minuteKey,
+                        MetricsRollupService.viewsField(contentId).getBytes(StandardCharsets.UTF_8), delta);
+                for (String dimensionKey : dimensionKeys(metas.get(contentId))) {
+                    connection.zSetCommands().zIncrBy(dimensionKey.getBytes(StandardCharsets.UTF_8), delta, member);
+                }
+                connection.stringCommands().incrBy(
+                        (CONTENT_VIEWS_PREFIX + contentId).getBytes(StandardCharsets.UTF_8), delta);
+            });
+            creatorDeltas.forEach((creatorId, delta) -> connection.hashCommands().hIncrBy(
+                    (CREATOR_STATS_PREFIX + creatorId).getBytes(StandardCharsets.UTF_8), viewsField, delta));
+            connection.keyCommands().expire(trendingKey, trendingService.bucketTtlSeconds());
+            connection.keyCommands().expire(minuteKey, metricsRollupService.minuteTtlSeconds());
+            return null;
+        });
+    }
+
+    /**
+     * Quita un contenido eliminado de los rankings y descuenta sus vistas y likes
+     * del contador agregado del creador (un solo script atómico). Las vistas
+     * pendientes del contenido en este nodo se descartan.
+     */
+    public void removeContent(String contentId, ContentMetaCache.ContentMeta meta) {
+        pending.remove(contentId);
+        List<String> dimensions = dimensionKeys(meta);
+        List<String> keys = new ArrayList<>(dimensions.size() + 3);
+        keys.add(VIEWS_KEY);
+        keys.add(LIKES_RANKING_KEY);
+        keys.addAll(dimensions);
+        if (meta.creadorId() != null) {
+            keys.add(CREATOR_STATS_PREFIX + meta.creadorId());
+        }
+        redisTemplate.execute(redisScripts.getContentRemove(), keys, contentId, String.valueOf(dimensions.size()));
+    }
+
+    /**
+     * Pasa un contenido de los rankings por dimensión anteriores a los nuevos
+     * (ZREM y ZADD con el puntaje de ranking:vistas:global, en un solo script)
+     * No hace nada si las dimensiones no cambiaron.
+     */
+    public void moveDimensions(String contentId, ContentMetaCache.ContentMeta previous,
+                               ContentMetaCache.ContentMeta current) {
+        List<String> previousKeys = dimensionKeys(previous);
+        List<String> currentKeys = dimensionKeys(current);
+        if (previousKeys.equals(currentKeys)) {
+            return;
+        }
+        List<String> removed = new ArrayList<>(previousKeys);
+        removed.removeAll(currentKeys);
+        List<String> added = new ArrayList<>(currentKeys);
+        added.removeAll(previousKeys);
+
+        List<String> keys = new ArrayList<>(removed.size() + added.size() + 1);
+        keys.add(VIEWS_KEY);
+        keys.addAll(removed);
+        keys.addAll(added);
+        redisTemplate.execute(redisScripts.getContentDimensionsMove(), keys, contentId,
+                String.valueOf(removed.size()));
+    }
+
+    /**
+     * Rankings por dimensión en los que participa un contenido
+     */
+    public static List<String> dimensionKeys(ContentMetaCache.ContentMeta meta) {
+        if (meta == null) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(3);
+        if (meta.categoria() != null) {
+            keys.add(CATEGORY_RANKING_PREFIX + meta.categoria());
+        }
+        if (meta.tipo() != null) {
+            keys.add(TYPE_RANKING_PREFIX + meta.tipo());
+        }
+        if (meta.region() != null) {
+            keys.add(REGION_RANKING_PREFIX + meta.region());
+        }
+        return keys;
+    }
+
+    /**
+     * Carga inicial de los rankings por dimensión desde ranking:vistas:global
+     * Se ejecuta una sola vez por instalación (marca en Redis); recorre el ranking
+     * global por páginas y escribe cada página en un único pipeline. Las vistas que
+     * se guarden mientras corre pueden quedar sin reflejar en las dimensiones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildDimensionRankings() {
+        boolean acquired = false;
+        try {
+            acquired = Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(DIMENSIONS_INIT_KEY, String.valueOf(System.currentTimeMillis())));
+            if (!acquired) {
+                return;
+            }
+            long offset = 0;
+            long contents = 0;
+            while (true) {
+                Set<ZSetOperations.TypedTuple<String>> page = redisTemplate.opsForZSet()
+                        .rangeWithScores(VIEWS_KEY, offset, offset + REBUILD_PAGE_SIZE - 1);
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                Map<String, ContentMetaCache.ContentMeta> metas = contentMetaCache.resolve(
+                        page.stream().map(ZSetOperations.TypedTuple::getValue).filter(Objects::nonNull).toList());
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (ZSetOperations.TypedTuple<String> tuple : page) {
+                        if (tuple.getValue() == null || tuple.getScore() == null) {
+                            continue;
+                        }
+                        byte[] member = tuple.getValue().getBytes(StandardCharsets.UTF_8);
+                        for (String dimensionKey : dimensionKeys(metas.get(tuple.getValue()))) {
+                            connection.zSetCommands().zAdd(dimensionKey.getBytes(StandardCharsets.UTF_8),
+                                    tuple.getScore(), member);
+                        }
+                    }
+                    return null;
+                });
+                contents += page.size();
+                offset += REBUILD_PAGE_SIZE;
+            }
+            log.info("Rankings por dimensión cargados para {} contenidos", contents);
+        } catch (Exception e) {
+            log.error("Error al cargar rankings por dimensión: {}", e.getMessage(), e);
+            if (acquired) {
+                // Se reintenta en el próximo arranque
+                try {
+                    redisTemplate.delete(DIMENSIONS_INIT_KEY);
+                } catch (Exception ignored) {
+                    // Redis no disponible: la marca queda y la carga no se repite
+                }
+            }
+        }
+    }
+
+    /**
+     * Guarda los deltas pendientes al apagar el nodo
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,17 @@
+-- Mueve un contenido entre rankings por dimensión (cambio de categoría, tipo o región)
+-- KEYS[1] = ranking:vistas:global
+-- KEYS[2..1+ARGV[2]] = rankings anteriores, KEYS[2+ARGV[2]..] = rankings nuevos
+-- ARGV[1] = ID del contenido, ARGV[2] = cantidad de rankings anteriores
+-- Los rankings nuevos reciben el puntaje global. Devuelve el puntaje (0 si no tenía vistas)
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+local previous = tonumber(ARGV[2])
+
+for i = 2, 1 + previous do
+    redis.call('ZREM', KEYS[i], ARGV[1])
+end
+if score then
+    for i = 2 + previous, #KEYS do
+        redis.call('ZADD', KEYS[i], score, ARGV[1])
+    end
+end
+return math.floor(tonumber(score) or 0)
@@ -0,0 +1,25 @@
+-- Quita un contenido eliminado de los rankings y descuenta sus vistas y likes del creador
+-- KEYS[1] = ranking:vistas:global, KEYS[2] = ranking:likes:global
+-- KEYS[3..2+ARGV[2]] = rankings por dimensión del contenido
+-- KEYS[3+ARGV[2]] = analytics:creator:{creatorId} (opcional, si se conoce el creador)
+-- ARGV[1] = ID del contenido, ARGV[2] = cantidad de rankings por dimensión
+-- El creador solo se corrige si ya estaba inicializado (si no, la inicialización
+-- sumará únicamente los contenidos que siguen existiendo). Devuelve {vistas, likes}
+local vistas = math.floor(tonumber(redis.call('ZSCORE', KEYS[1], ARGV[1])) or 0)
+local likes = math.floor(tonumber(redis.call('ZSCORE', KEYS[2], ARGV[1])) or 0)
+local dimensions = tonumber(ARGV[2])
+
+for i = 1, 2 + dimensions do
+    redis.call('ZREM', KEYS[i], ARGV[1])
+end
+
+local creator = KEYS[3 + dimensions]
+if creator and redis.call('HEXISTS', creator, 'inicializado') == 1 then
+    if vistas ~= 0 then
+        redis.call('HINCRBY', creator, 'vistas', -vistas)
+    end
+    if likes ~= 0 then
+        redis.call('HINCRBY', creator, 'likes', -likes)
+    end
+end
+return {vistas, likes}
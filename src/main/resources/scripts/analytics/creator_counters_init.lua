@@ -0,0 +1,14 @@
+-- Inicializa los contadores agregados de un creador desde los rankings globales
+-- KEYS[1] = analytics:creator:{creatorId} (HASH), KEYS[2] = ranking:vistas:global, KEYS[3] = ranking:likes:global
+-- ARGV = IDs de los contenidos del creador
+-- Si ya estaban inicializados no se tocan. Devuelve {vistas, likes}
+if redis.call('HEXISTS', KEYS[1], 'inicializado') == 0 then
+    local vistas = 0
+    local likes = 0
+    for i = 1, #ARGV do
+        vistas = vistas + (tonumber(redis.call('ZSCORE', KEYS[2], ARGV[i])) or 0)
+        likes = likes + (tonumber(redis.call('ZSCORE', KEYS[3], ARGV[i])) or 0)
+    end
+    redis.call('HSET', KEYS[1], 'vistas', vistas, 'likes', likes, 'inicializado', 1)
+end
+return redis.call('HMGET', KEYS[1], 'vistas', 'likes')
@@ -0,0 +1,14 @@
+-- Ventana de deduplicación de vistas por espectador
+-- KEYS[1] = analytics:views:seen:{bucket} (SET del bucket actual), KEYS[2] = SET del bucket anterior
+-- ARGV[1] = contentId|espectador, ARGV[2] = TTL del bucket en segundos
+-- Devuelve 1 si la vista cuenta (el espectador no vio el contenido en el bucket actual ni en el anterior)
+if redis.call('SISMEMBER', KEYS[2], ARGV[1]) == 1 then
+    return 0
+end
+if redis.call('SADD', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+if redis.call('TTL', KEYS[1]) < 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return 1
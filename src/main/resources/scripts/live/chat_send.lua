@@ -0,0 +1,9 @@
+-- Agrega un mensaje al stream de chat (recorte aproximado), cuenta el total y publica el evento
+-- KEYS[1] = live:chat:{liveId}, KEYS[2] = live:stats:{liveId} (HASH: messageCount)
+-- ARGV[1] = largo máximo del stream (tope de seguridad; el archivo recorta con MINID), ARGV[2] = userId, ARGV[3] = texto
+-- ARGV[4] = canal de eventos, ARGV[5] = evento serializado
+-- El stream se recorta, por eso el total de mensajes se lleva en un contador aparte
+local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'userId', ARGV[2], 'texto', ARGV[3])
+redis.call('HINCRBY', KEYS[2], 'messageCount', 1)
+redis.call('PUBLISH', ARGV[4], ARGV[5])
+return id
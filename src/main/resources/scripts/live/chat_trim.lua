@@ -0,0 +1,5 @@
+-- Recorta el stream de chat ya archivado (XTRIM MINID aproximado)
+-- KEYS[1] = live:chat:{liveId}
+-- ARGV[1] = ID mínimo a conservar (las entradas anteriores se pueden borrar)
+-- Devuelve la cantidad de entradas borradas
+return redis.call('XTRIM', KEYS[1], 'MINID', '~', ARGV[1])
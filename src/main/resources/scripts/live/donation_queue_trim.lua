@@ -0,0 +1,48 @@
+-- Recorta la cola de donaciones solo detrás del consumer group más atrasado
+-- KEYS[1] = live:donations:queue
+-- ARGV = consumer groups que deben procesar cada donación
+-- Para cada grupo, el límite es la entrada pendiente (sin ACK) más vieja o, si no
+-- tiene pendientes, la última entregada. Se conservan las entradas desde el menor
+-- de esos límites (XTRIM MINID). Si falta algún grupo no se borra nada.
+-- Devuelve la cantidad de entradas borradas
+local function older(a, b)
+    local ams, aseq = string.match(a, '(%d+)-(%d+)')
+    local bms, bseq = string.match(b, '(%d+)-(%d+)')
+    ams, bms = tonumber(ams), tonumber(bms)
+    if ams ~= bms then
+        return ams < bms
+    end
+    return tonumber(aseq) < tonumber(bseq)
+end
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+
+local delivered = {}
+for _, info in ipairs(redis.call('XINFO', 'GROUPS', KEYS[1])) do
+    local fields = {}
+    for i = 1, #info, 2 do
+        fields[info[i]] = info[i + 1]
+    end
+    delivered[fields['name']] = fields['last-delivered-id']
+end
+
+local min = nil
+for _, group in ipairs(ARGV) do
+    local limit = delivered[group]
+    if not limit then
+        return 0
+    end
+    local pending = redis.call('XPENDING', KEYS[1], group)
+    if pending[1] > 0 then
+        limit = pending[2]
+    end
+    if min == nil or older(limit, min) then
+        min = limit
+    end
+end
+if min == nil or min == '0-0' then
+    return 0
+end
+return redis.call('XTRIM', KEYS[1], 'MINID', '~', min)
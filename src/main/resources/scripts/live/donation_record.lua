@@ -0,0 +1,22 @@
+-- Registra una donación: la encola para persistencia (write-behind), actualiza
+-- atómicamente los agregados de la transmisión y publica el evento
+-- KEYS[1] = live:stats:{liveId}        (HASH: donationCount, donationTotal)
+-- KEYS[2] = live:donors:{liveId}       (ZSET donorId -> monto acumulado, ranking de donantes)
+-- KEYS[3] = live:donations:queue       (STREAM de donaciones pendientes de guardar en MongoDB)
+-- ARGV[1] = donorId, ARGV[2] = monto, ARGV[3] = canal de eventos, ARGV[4] = evento serializado
+-- ARGV[5] = ID de donación (clave de idempotencia), ARGV[6] = liveId, ARGV[7] = creatorId
+-- ARGV[8] = fecha (ms)
+-- La cola no se recorta acá: DonationWriteBehindService la recorta detrás de
+-- los consumer groups, para no perder donaciones sin guardar o sin archivar
+-- El evento se publica con los agregados actualizados (campos "donationCount" y "donationTotal")
+redis.call('XADD', KEYS[3], '*',
+    'id', ARGV[5], 'liveId', ARGV[6], 'donorId', ARGV[1], 'creatorId', ARGV[7],
+    'amount', ARGV[2], 'ts', ARGV[8])
+local count = redis.call('HINCRBY', KEYS[1], 'donationCount', 1)
+local total = redis.call('HINCRBYFLOAT', KEYS[1], 'donationTotal', ARGV[2])
+redis.call('ZINCRBY', KEYS[2], ARGV[2], ARGV[1])
+local event = cjson.decode(ARGV[4])
+event['donationCount'] = count
+event['donationTotal'] = tonumber(total)
+redis.call('PUBLISH', ARGV[3], cjson.encode(event))
+return {count, total}
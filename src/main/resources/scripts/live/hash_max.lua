@@ -0,0 +1,14 @@
+-- Guarda un campo numérico de un hash solo si el valor nuevo es mayor (máximo entre nodos)
+-- KEYS[1] = hash (ej. live:stats:{liveId} o live:concurrency:{liveId})
+-- ARGV[1] = campo, ARGV[2] = valor, ARGV[3] = TTL de la clave en segundos (0 = no cambiar)
+-- Devuelve el máximo guardado
+local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+local value = tonumber(ARGV[2])
+if value > current then
+    redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+    current = value
+end
+if tonumber(ARGV[3]) > 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[3])
+end
+return current
@@ -0,0 +1,6 @@
+-- Quita una transmisión del conjunto de activas y publica el evento de finalización
+-- KEYS[1] = live:active
+-- ARGV[1] = liveId, ARGV[2] = canal de eventos, ARGV[3] = evento serializado
+redis.call('SREM', KEYS[1], ARGV[1])
+redis.call('PUBLISH', ARGV[2], ARGV[3])
+return 1
@@ -0,0 +1,6 @@
+-- Registra una transmisión como activa y publica el evento de inicio
+-- KEYS[1] = live:active
+-- ARGV[1] = liveId, ARGV[2] = canal de eventos, ARGV[3] = evento serializado
+redis.call('SADD', KEYS[1], ARGV[1])
+redis.call('PUBLISH', ARGV[2], ARGV[3])
+return 1
@@ -0,0 +1,9 @@
+-- Reemplaza la lista de palabras bloqueadas del chat e incrementa su versión
+-- KEYS[1] = live:moderation:blocklist (SET), KEYS[2] = live:moderation:version
+-- ARGV = palabras
+-- Los nodos comparan la versión periódicamente y recompilan su autómata si cambió
+redis.call('DEL', KEYS[1])
+for i = 1, #ARGV, 1000 do
+    redis.call('SADD', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+end
+return redis.call('INCR', KEYS[2])
@@ -0,0 +1,9 @@
+-- Elimina a un espectador de la transmisión y publica el evento de salida
+-- KEYS[1] = live:presence:{liveId}
+-- ARGV[1] = userId, ARGV[2] = canal de eventos, ARGV[3] = evento serializado
+-- El evento se publica con el número de espectadores actualizado (campo "viewers")
+local removed = redis.call('ZREM', KEYS[1], ARGV[1])
+local event = cjson.decode(ARGV[3])
+event['viewers'] = redis.call('ZCARD', KEYS[1])
+redis.call('PUBLISH', ARGV[2], cjson.encode(event))
+return removed
@@ -0,0 +1,20 @@
+-- Elimina espectadores sin heartbeat reciente y registra la muestra de concurrencia del minuto
+-- KEYS[1] = live:presence:{liveId}, KEYS[2] = live:concurrency:{liveId}
+-- ARGV[1] = límite (ms, se eliminan los scores menores), ARGV[2] = minuto (ms), ARGV[3] = TTL de la serie (s)
+-- ARGV[4] = canal de eventos, ARGV[5] = evento serializado (se publica con "viewers" si hubo expirados)
+local removed = redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[1])
+local viewers = redis.call('ZCARD', KEYS[1])
+
+if removed > 0 then
+    local event = cjson.decode(ARGV[5])
+    event['viewers'] = viewers
+    redis.call('PUBLISH', ARGV[4], cjson.encode(event))
+end
+
+local sample = tonumber(redis.call('HGET', KEYS[2], ARGV[2]) or '-1')
+if viewers > sample then
+    redis.call('HSET', KEYS[2], ARGV[2], viewers)
+    redis.call('EXPIRE', KEYS[2], ARGV[3])
+end
+
+return {removed, viewers}
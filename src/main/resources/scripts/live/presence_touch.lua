@@ -0,0 +1,28 @@
+-- Registra (o renueva) la presencia de un espectador y actualiza el pico de concurrencia
+-- KEYS[1] = live:presence:{liveId}     (ZSET miembro=userId, score=último heartbeat en ms)
+-- KEYS[2] = live:stats:{liveId}        (HASH con el campo peakViewers)
+-- KEYS[3] = live:concurrency:{liveId}  (HASH minuto -> máximo de espectadores)
+-- ARGV[1] = userId, ARGV[2] = ahora (ms), ARGV[3] = minuto (ms), ARGV[4] = TTL de la serie (s)
+-- ARGV[5] = canal de eventos, ARGV[6] = evento serializado (vacío = no publicar, ej. heartbeat)
+-- El evento se publica con el número de espectadores actualizado (campo "viewers")
+redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+local viewers = redis.call('ZCARD', KEYS[1])
+
+local peak = tonumber(redis.call('HGET', KEYS[2], 'peakViewers') or '0')
+if viewers > peak then
+    redis.call('HSET', KEYS[2], 'peakViewers', viewers)
+end
+
+local sample = tonumber(redis.call('HGET', KEYS[3], ARGV[3]) or '0')
+if viewers > sample then
+    redis.call('HSET', KEYS[3], ARGV[3], viewers)
+    redis.call('EXPIRE', KEYS[3], ARGV[4])
+end
+
+if ARGV[6] ~= '' then
+    local event = cjson.decode(ARGV[6])
+    event['viewers'] = viewers
+    redis.call('PUBLISH', ARGV[5], cjson.encode(event))
+end
+
+return viewers
@@ -0,0 +1,32 @@
+-- Marca una pregunta pendiente como respondida y publica el evento
+-- KEYS[1] = live:preguntas:items:{liveId}, KEYS[2] = live:preguntas:pendientes:{liveId}
+-- KEYS[3] = live:preguntas:votos:{liveId}, KEYS[4] = live:preguntas:respondidas:{liveId} (ZSET id -> fecha ms)
+-- ARGV[1] = ID de pregunta, ARGV[2] = fecha (ms), ARGV[3] = canal de eventos, ARGV[4] = evento serializado
+-- ARGV[5] = factor de votos del ranking (score = votos * factor - secuencia)
+-- Devuelve los votos finales de la pregunta o -1 si no estaba pendiente
+if redis.call('ZREM', KEYS[2], ARGV[1]) == 0 then
+    return -1
+end
+local score = redis.call('ZSCORE', KEYS[3], ARGV[1])
+local votes = 0
+if score then
+    votes = (tonumber(score) + tonumber(ARGV[1])) / tonumber(ARGV[5])
+end
+redis.call('ZREM', KEYS[3], ARGV[1])
+redis.call('ZADD', KEYS[4], ARGV[2], ARGV[1])
+
+-- Los votos de las respondidas quedan fijos en el documento de la pregunta
+local raw = redis.call('HGET', KEYS[1], ARGV[1])
+if raw then
+    local question = cjson.decode(raw)
+    question['estado'] = 'RESPONDIDA'
+    question['votes'] = votes
+    question['answeredAt'] = tonumber(ARGV[2])
+    redis.call('HSET', KEYS[1], ARGV[1], cjson.encode(question))
+end
+
+local event = cjson.decode(ARGV[4])
+event['votes'] = votes
+event['pendingQuestions'] = redis.call('ZCARD', KEYS[2])
+redis.call('PUBLISH', ARGV[3], cjson.encode(event))
+return votes
@@ -0,0 +1,25 @@
+-- Registra una pregunta nueva (estado PENDIENTE, 0 votos) y publica el evento
+-- KEYS[1] = live:preguntas:seq:{liveId}         (contador, genera el ID de la pregunta)
+-- KEYS[2] = live:preguntas:items:{liveId}       (HASH id -> pregunta JSON)
+-- KEYS[3] = live:preguntas:pendientes:{liveId}  (ZSET id -> secuencia, orden de llegada)
+-- KEYS[4] = live:preguntas:votos:{liveId}       (ZSET id -> votos * ARGV[7] - secuencia, solo pendientes)
+-- ARGV[1] = userId, ARGV[2] = userName (vacío = sin nombre), ARGV[3] = texto, ARGV[4] = fecha (ms)
+-- ARGV[5] = canal de eventos, ARGV[6] = evento serializado, ARGV[7] = factor de votos del ranking
+-- El evento se publica con el ID asignado y el total de pendientes ("questionId", "pendingQuestions")
+local seq = redis.call('INCR', KEYS[1])
+local id = tostring(seq)
+
+local question = {id = id, userId = ARGV[1], question = ARGV[3], ts = tonumber(ARGV[4]), estado = 'PENDIENTE'}
+if ARGV[2] ~= '' then
+    question['userName'] = ARGV[2]
+end
+redis.call('HSET', KEYS[2], id, cjson.encode(question))
+redis.call('ZADD', KEYS[3], seq, id)
+-- Sin votos: a igual cantidad de votos queda primero la más antigua (secuencia menor)
+redis.call('ZADD', KEYS[4], -seq, id)
+
+local event = cjson.decode(ARGV[6])
+event['questionId'] = id
+event['pendingQuestions'] = redis.call('ZCARD', KEYS[3])
+redis.call('PUBLISH', ARGV[5], cjson.encode(event))
+return id
@@ -0,0 +1,20 @@
+-- Suma el voto de un usuario a una pregunta pendiente (un voto por usuario)
+-- KEYS[1] = live:preguntas:pendientes:{liveId}, KEYS[2] = live:preguntas:votos:{liveId}
+-- KEYS[3] = live:preguntas:votantes:{liveId}    (SET "id|userId")
+-- ARGV[1] = ID de pregunta, ARGV[2] = userId, ARGV[3] = canal de eventos, ARGV[4] = evento serializado
+-- ARGV[5] = factor de votos del ranking (score = votos * factor - secuencia)
+-- Devuelve los votos actualizados, -1 si la pregunta no está pendiente o -2 si el usuario ya votó
+if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+    return -1
+end
+if redis.call('SADD', KEYS[3], ARGV[1] .. '|' .. ARGV[2]) == 0 then
+    return -2
+end
+local factor = tonumber(ARGV[5])
+local score = tonumber(redis.call('ZINCRBY', KEYS[2], factor, ARGV[1]))
+local votes = (score + tonumber(ARGV[1])) / factor
+
+local event = cjson.decode(ARGV[4])
+event['votes'] = votes
+redis.call('PUBLISH', ARGV[3], cjson.encode(event))
+return votes
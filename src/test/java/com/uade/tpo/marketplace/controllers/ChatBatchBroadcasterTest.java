@@ -0,0 +1,82 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.controllers.WebSocketChatController.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ChatBatchBroadcasterTest {
+
+    @Test
+    void flushConcurrentWithEnqueueDeliversEveryMessage() throws Exception {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        AtomicInteger delivered = new AtomicInteger();
+        doAnswer(invocation -> {
+            delivered.addAndGet(((List<?>) invocation.getArgument(1)).size());
+            return null;
+        }).when(template).convertAndSend(anyString(), any(Object.class));
+
+        ChatBatchBroadcaster broadcaster = new ChatBatchBroadcaster(template, true, 100);
+        int producers = 4;
+        int perProducer = 20_000;
+
+        // Flush en bucle: las colas quedan vacías a menudo y se quitan del mapa
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                broadcaster.flush();
+            }
+        });
+        flusher.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    broadcaster.enqueue("live-" + (i % 3), new ChatMessage("user", "hola " + i, "now", "CHAT"));
+                    if (i % 100 == 0) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        done.set(true);
+        flusher.join();
+        broadcaster.flush();
+
+        assertEquals(producers * perProducer, delivered.get());
+    }
+
+    @Test
+    void flushSplitsFramesByMaxPerFrame() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        AtomicInteger frames = new AtomicInteger();
+        doAnswer(invocation -> {
+            frames.incrementAndGet();
+            return null;
+        }).when(template).convertAndSend(anyString(), any(Object.class));
+
+        ChatBatchBroadcaster broadcaster = new ChatBatchBroadcaster(template, true, 10);
+        for (int i = 0; i < 25; i++) {
+            broadcaster.enqueue("live-1", new ChatMessage("user", "m" + i, "now", "CHAT"));
+        }
+        broadcaster.flush();
+
+        assertEquals(3, frames.get());
+    }
+}
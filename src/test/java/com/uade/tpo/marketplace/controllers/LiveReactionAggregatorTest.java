@@ -0,0 +1,139 @@
+package com.uade.tpo.marketplace.controllers;
+
+import com.uade.tpo.marketplace.entity.redis.LiveEventMessage;
+import com.uade.tpo.marketplace.service.LiveEventBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LiveReactionAggregatorTest {
+
+    private RedisTemplate<String, String> redisTemplate;
+    private AtomicLong published;
+    private LiveReactionAggregator aggregator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Collections.emptyList());
+
+        // Suma de los deltas publicados por todos los flush
+        LiveEventBus liveEventBus = mock(LiveEventBus.class);
+        published = new AtomicLong();
+        doAnswer(invocation -> {
+            LiveEventMessage event = invocation.getArgument(0);
+            event.getReactions().values().forEach(published::addAndGet);
+            return null;
+        }).when(liveEventBus).publish(any(LiveEventMessage.class));
+
+        aggregator = new LiveReactionAggregator(redisTemplate, liveEventBus, mock(SimpMessagingTemplate.class),
+                List.of("heart", "clap"), 50, 86_400);
+    }
+
+    @Test
+    void flushConcurrentWithRecordKeepsEveryReaction() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+
+        // Flush frecuente mientras se registran reacciones: el drenado compite con los toques
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                aggregator.flush();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        flusher.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            pool.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    aggregator.record("live-1", i % 2 == 0 ? "heart" : "clap", 1);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        done.set(true);
+        flusher.join();
+        aggregator.flush();
+        aggregator.flush();
+
+        assertEquals((long) producers * perProducer, published.get());
+    }
+
+    @Test
+    void idleLiveCountersAreReleasedAndReusable() {
+        aggregator.record("live-1", "heart", 2);
+        // Tras muchos flushes sin reacciones los contadores se quitan del mapa
+        for (int i = 0; i < 100; i++) {
+            aggregator.flush();
+        }
+        aggregator.record("live-1", "heart", 3);
+        aggregator.flush();
+
+        assertEquals(5, published.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deltasAreRetriedWhenRedisIsUnavailable() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("sin conexión"))
+                .thenReturn(List.of(7L));
+
+        aggregator.record("live-1", "heart", 3);
+        aggregator.flush();
+        assertEquals(0, published.get());
+
+        aggregator.record("live-1", "heart", 4);
+        aggregator.flush();
+        assertEquals(7, published.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deltasAreNotRetriedAfterOtherErrors() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new IllegalStateException("respuesta inválida"))
+                .thenReturn(Collections.emptyList());
+
+        aggregator.record("live-1", "heart", 3);
+        aggregator.flush();
+        aggregator.flush();
+        assertEquals(0, published.get());
+    }
+
+    @Test
+    void recordRejectsUnknownReactionsAndCapsCount() {
+        assertFalse(aggregator.record("live-1", "boo", 1));
+        aggregator.record("live-1", "heart", 500);
+        aggregator.flush();
+        assertEquals(50, published.get());
+    }
+}
@@ -0,0 +1,128 @@
+package com.uade.tpo.marketplace.controllers.config;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comparación de throughput y p99 del canal de entrada STOMP con hilos de
+ * plataforma y con hilos virtuales, con el mismo límite de concurrencia y de cola
+ *
+ * Cada modo usa el executor que registra WebSocketConfig
+ * (ExecutionConfig.channelExecutor) sobre un ExecutorSubscribableChannel, el tipo
+ * de canal de entrada de Spring, con el orden por sesión que activa
+ * setPreserveReceiveOrder. Se prueban varios límites: 2 hilos por core y el
+ * valor por defecto de "live.ws.channel.max-concurrency".
+ *
+ * Simula 10k espectadores enviando chat: cada mensaje hace una llamada
+ * bloqueante de ~2 ms (Redis) y el 1% tarda 50 ms (pausa de Redis o MongoDB).
+ * No corre en el build normal:
+ *   mvn test -Dtest=ChannelExecutorBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ChannelExecutorBenchmarkTest {
+
+    private static final int VIEWERS = 10_000;
+    private static final int MESSAGES_PER_VIEWER = 3;
+    private static final int TOTAL = VIEWERS * MESSAGES_PER_VIEWER;
+    // Valor por defecto de "live.ws.channel.queue-capacity"; con el orden por sesión
+    // hay a lo sumo un mensaje por espectador en el executor
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    @Test
+    void compareChannelExecutors() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int maxConcurrency : new int[] {cores * 2, 1000}) {
+            Result platformResult = run(new ExecutionConfig(false), maxConcurrency);
+            Result virtualResult = run(new ExecutionConfig(true), maxConcurrency);
+            System.out.printf("Concurrencia %d:%n  Plataforma: %s%n  Virtuales:  %s%n",
+                    maxConcurrency, platformResult, virtualResult);
+            assertTrue(virtualResult.throughput() > 0 && platformResult.throughput() > 0);
+        }
+    }
+
+    private static Result run(ExecutionConfig executionConfig, int maxConcurrency) throws InterruptedException {
+        ThreadPoolTaskExecutor executor = executionConfig.channelExecutor("bench-inbound-",
+                maxConcurrency, QUEUE_CAPACITY);
+        executor.initialize();
+
+        long[] latencies = new long[TOTAL];
+        AtomicInteger index = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(TOTAL);
+
+        // Mismo armado que el canal de entrada con setPreserveReceiveOrder(true)
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel(executor);
+        OrderedMessageChannelDecorator.configureInterceptor(inbound, true);
+        inbound.subscribe(message -> {
+            blockingCall();
+            latencies[index.getAndIncrement()] = System.nanoTime() - (Long) message.getPayload();
+            done.countDown();
+        });
+        MessageChannel channel = new OrderedMessageChannelDecorator(inbound,
+                LogFactory.getLog(ChannelExecutorBenchmarkTest.class));
+
+        try {
+            long start = System.nanoTime();
+            // Cada espectador envía su siguiente mensaje después de que todos enviaron el anterior
+            for (int m = 0; m < MESSAGES_PER_VIEWER; m++) {
+                for (int viewer = 0; viewer < VIEWERS; viewer++) {
+                    channel.send(chatMessage(viewer));
+                }
+            }
+            assertTrue(done.await(5, TimeUnit.MINUTES), "El benchmark no terminó a tiempo");
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(TOTAL, index.get());
+            Arrays.sort(latencies);
+            return new Result(TOTAL * 1_000_000_000d / elapsed,
+                    latencies[(int) (TOTAL * 0.50)] / 1_000_000d,
+                    latencies[(int) (TOTAL * 0.99)] / 1_000_000d);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * SEND de chat de un espectador; el payload es el instante de envío.
+     * Los headers quedan mutables porque el decorador de orden los modifica
+     */
+    private static Message<Long> chatMessage(int viewer) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId("session-" + viewer);
+        accessor.setDestination("/app/live/bench-" + (viewer % 100) + "/chat");
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(System.nanoTime(), accessor.getMessageHeaders());
+    }
+
+    private static void blockingCall() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(100) == 0 ? 50 : 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Result(double throughput, double p50Ms, double p99Ms) {
+        @Override
+        public String toString() {
+            return String.format("%.0f msg/s, p50 %.1f ms, p99 %.1f ms", throughput, p50Ms, p99Ms);
+        }
+    }
+}
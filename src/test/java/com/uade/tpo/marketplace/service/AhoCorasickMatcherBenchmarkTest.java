@@ -0,0 +1,158 @@
+package com.uade.tpo.marketplace.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.text.Normalizer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comparación de AhoCorasickMatcher con el recorrido ingenuo por palabra
+ * (normalizar el mensaje, separarlo en palabras y buscar cada una en un HashSet,
+ * o buscar cada palabra prohibida con contains para coincidencias parciales)
+ *
+ * Simula mensajes de chat de 4 a 20 palabras contra listas de 100, 1.000 y 10.000
+ * palabras prohibidas. Ambos métodos deben encontrar los mismos mensajes.
+ * No corre en el build normal:
+ *   mvn test -Dtest=AhoCorasickMatcherBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AhoCorasickMatcherBenchmarkTest {
+
+    private static final int MESSAGES = 100_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void compareWithNaiveScan() {
+        for (int blocklistSize : new int[] {100, 1_000, 10_000}) {
+            Random random = new Random(42);
+            List<String> blocklist = words(random, blocklistSize, "z");
+            List<String> messages = messages(random, blocklist);
+
+            AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(blocklist);
+            Set<String> blocked = new HashSet<>(blocklist);
+
+            // Mismo resultado en ambos modos antes de medir
+            assertEquals(count(messages, m -> naiveWholeWords(blocked, m)),
+                    count(messages, m -> matcher.matches(m, true)));
+            assertEquals(count(messages, m -> naiveSubstring(blocklist, m)),
+                    count(messages, m -> matcher.matches(m, false)));
+
+            System.out.printf("Lista de %,d palabras, %,d mensajes:%n", blocklistSize, MESSAGES);
+            System.out.printf("  palabras completas: Aho-Corasick %s | HashSet por palabra %s%n",
+                    measure(messages, m -> matcher.matches(m, true)),
+                    measure(messages, m -> naiveWholeWords(blocked, m)));
+            System.out.printf("  coincidencia parcial: Aho-Corasick %s | contains por palabra %s%n",
+                    measure(messages, m -> matcher.matches(m, false)),
+                    measure(messages, m -> naiveSubstring(blocklist, m)));
+        }
+    }
+
+    private interface Check {
+        boolean test(String message);
+    }
+
+    private static int count(List<String> messages, Check check) {
+        int matched = 0;
+        for (String message : messages) {
+            if (check.test(message)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Mejor tiempo por mensaje de varias rondas, tras calentar el JIT
+     */
+    private static String measure(List<String> messages, Check check) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += count(messages, check);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += count(messages, check);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // El total de coincidencias se imprime para que el JIT no descarte el recorrido
+        return String.format("%.0f ns/msg, %d coincidencias", (double) best / messages.size(),
+                sink / (WARMUP_ROUNDS + ROUNDS));
+    }
+
+    // ========== RECORRIDO INGENUO ==========
+
+    private static boolean naiveWholeWords(Set<String> blocked, String message) {
+        for (String word : normalize(message).split("[^\\p{L}\\p{N}]+")) {
+            if (blocked.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean naiveSubstring(List<String> blocklist, String message) {
+        String normalized = normalize(message);
+        for (String word : blocklist) {
+            if (normalized.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String text) {
+        return Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+    }
+
+    // ========== DATOS ==========
+
+    /**
+     * Palabras aleatorias de 4 a 9 letras; las prohibidas empiezan con un prefijo
+     * propio para que las normales no las contengan por casualidad
+     */
+    private static List<String> words(Random random, int count, String prefix) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder(prefix);
+            int length = 4 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(25))); // Sin 'z'
+            }
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Mensajes de chat: el 5% con una palabra prohibida, con mayúsculas y tildes al azar
+     */
+    private static List<String> messages(Random random, List<String> blocklist) {
+        List<String> vocabulary = words(random, 5_000, "");
+        List<String> messages = new ArrayList<>(MESSAGES);
+        for (int m = 0; m < MESSAGES; m++) {
+            int length = 4 + random.nextInt(17);
+            int blockedAt = random.nextInt(100) < 5 ? random.nextInt(length) : -1;
+            StringBuilder message = new StringBuilder();
+            for (int w = 0; w < length; w++) {
+                if (w > 0) {
+                    message.append(random.nextInt(10) == 0 ? ", " : " ");
+                }
+                String word = w == blockedAt
+                        ? blocklist.get(random.nextInt(blocklist.size()))
+                        : vocabulary.get(random.nextInt(vocabulary.size()));
+                if (random.nextInt(8) == 0) {
+                    word = word.toUpperCase(Locale.ROOT);
+                }
+                message.append(word.replace('a', random.nextInt(4) == 0 ? 'á' : 'a'));
+            }
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,76 @@
+package com.uade.tpo.marketplace.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void matchesAnyPatternIgnoringCase() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("malo", "feo"));
+
+        assertEquals(2, matcher.size());
+        assertTrue(matcher.matches("Eso es MALO", false));
+        assertTrue(matcher.matches("muy feo", false));
+        assertFalse(matcher.matches("todo bien", false));
+        assertFalse(matcher.matches(null, false));
+    }
+
+    @Test
+    void masksOverlappingPatterns() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("he", "she", "hers"));
+
+        assertEquals("u*****", matcher.mask("ushers", false));
+    }
+
+    @Test
+    void wholeWordsIgnoreMatchesInsideOtherWords() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("ano"));
+
+        assertFalse(matcher.matches("mano", true));
+        assertTrue(matcher.matches("mano", false));
+        assertEquals("***, mano", matcher.mask("Año, mano", true));
+    }
+
+    @Test
+    void wholeWordsFallBackToShorterPatternOnlyAtBoundaries() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("mal", "malo"));
+
+        assertFalse(matcher.matches("malos", true));
+        assertTrue(matcher.matches("mal.", true));
+        assertEquals("muy ****!", matcher.mask("muy malo!", true));
+    }
+
+    @Test
+    void foldsAccentsInPatternsAndText() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("cafe", "árbol"));
+
+        assertTrue(matcher.matches("CAFÉ rico", true));
+        assertTrue(matcher.matches("un arbol", true));
+        assertEquals("Ese *****", matcher.mask("Ese ÁRBOL", false));
+    }
+
+    @Test
+    void maskReturnsSameInstanceWithoutMatches() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("malo"));
+        String text = "todo bien";
+
+        assertSame(text, matcher.mask(text, true));
+    }
+
+    @Test
+    void blankPatternsAreIgnored() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("", "  ", null));
+
+        assertEquals(0, matcher.size());
+        assertFalse(matcher.matches("cualquier texto", false));
+        assertEquals("cualquier texto", matcher.mask("cualquier texto", false));
+    }
+}
@@ -0,0 +1,81 @@
+package com.uade.tpo.marketplace.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertNull(ConsistentHashRing.of(List.of(), 128).ownerOf("live-1"));
+    }
+
+    @Test
+    void ownershipDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = ConsistentHashRing.of(List.of("a", "b", "c"), 128);
+        ConsistentHashRing shuffled = ConsistentHashRing.of(List.of("c", "a", "b"), 128);
+
+        assertEquals(Set.of("a", "b", "c"), ring.nodes());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.ownerOf("live-" + i), shuffled.ownerOf("live-" + i));
+        }
+    }
+
+    @Test
+    void keysAreSpreadAcrossNodes() {
+        ConsistentHashRing ring = ConsistentHashRing.of(List.of("a", "b", "c"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf("live-" + i), 1, Integer::sum);
+        }
+        // Con 128 nodos virtuales cada nodo queda cerca de un tercio
+        double fair = KEYS / 3.0;
+        for (String node : List.of("a", "b", "c")) {
+            int count = counts.getOrDefault(node, 0);
+            assertTrue(count > fair * 0.7 && count < fair * 1.3, node + " tiene " + count + " claves");
+        }
+    }
+
+    @Test
+    void addingNodeOnlyMovesKeysToTheNewNode() {
+        ConsistentHashRing before = ConsistentHashRing.of(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = ConsistentHashRing.of(List.of("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "live-" + i;
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        // Cambia de dueño cerca de un cuarto de las claves, no todas
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "claves movidas: " + moved);
+    }
+
+    @Test
+    void removingNodeKeepsOwnersOfTheOthers() {
+        ConsistentHashRing before = ConsistentHashRing.of(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = ConsistentHashRing.of(List.of("a", "b"), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "live-" + i;
+            String owner = before.ownerOf(key);
+            if (!"c".equals(owner)) {
+                assertEquals(owner, after.ownerOf(key));
+            }
+        }
+    }
+}
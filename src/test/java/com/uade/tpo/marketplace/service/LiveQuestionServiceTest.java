@@ -0,0 +1,117 @@
+package com.uade.tpo.marketplace.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LiveQuestionServiceTest {
+
+    private static final String VOTES_KEY = "live:preguntas:votos:L1";
+
+    private ZSetOperations<String, String> zSetOps;
+    private LiveQuestionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        zSetOps = mock(ZSetOperations.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOps);
+
+        // Cada pregunta se devuelve como JSON mínimo con su ID
+        when(hashOps.multiGet(anyString(), anyCollection())).thenAnswer(invocation -> {
+            List<Object> raw = new ArrayList<>();
+            for (Object id : (Collection<?>) invocation.getArgument(1)) {
+                raw.add("{\"id\":\"" + id + "\",\"estado\":\"PENDIENTE\"}");
+            }
+            return raw;
+        });
+
+        service = new LiveQuestionService(redisTemplate, mock(RedisScripts.class), mock(LiveEventBus.class),
+                new ObjectMapper());
+    }
+
+    @Test
+    void votesAreDecodedFromCompositeScore() {
+        assertEquals(0L, LiveQuestionService.votesOf("7", score(0, 7)));
+        assertEquals(3L, LiveQuestionService.votesOf("42", score(3, 42)));
+        assertEquals(125_000L, LiveQuestionService.votesOf("999999", score(125_000, 999_999)));
+    }
+
+    @Test
+    void tiesAreOrderedByArrivalInTheScore() {
+        // Mismos votos: la más antigua (secuencia menor) tiene mayor score
+        assertEquals(1, Double.compare(score(2, 1), score(2, 5)));
+        // Un voto más supera a cualquier diferencia de secuencia
+        assertEquals(1, Double.compare(score(3, 900_000_000), score(2, 1)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void votesPageUsesLastScoreAsKeysetCursor() {
+        when(zSetOps.reverseRangeByScoreWithScores(eq(VOTES_KEY), eq(Double.NEGATIVE_INFINITY),
+                eq(Double.POSITIVE_INFINITY), eq(0L), eq(2L)))
+                .thenReturn(tuples("4", score(5, 4), "1", score(2, 1)));
+
+        Map<String, Object> first = service.getPage("L1", null, LiveQuestionService.SORT_VOTES, null, 2);
+        List<Map<String, Object>> items = (List<Map<String, Object>>) first.get("items");
+        assertEquals(List.of("4", "1"), items.stream().map(q -> q.get("id")).toList());
+        assertEquals(5L, items.get(0).get("votes"));
+        assertEquals(2L, items.get(1).get("votes"));
+
+        long cursor = Long.parseLong((String) first.get("nextCursor"));
+        assertEquals((long) score(2, 1), cursor);
+
+        // La página siguiente arranca justo debajo del cursor, aunque el ranking haya cambiado
+        when(zSetOps.reverseRangeByScoreWithScores(eq(VOTES_KEY), eq(Double.NEGATIVE_INFINITY),
+                eq((double) (cursor - 1)), eq(0L), eq(2L)))
+                .thenReturn(tuples("3", score(2, 3)));
+
+        Map<String, Object> second = service.getPage("L1", null, LiveQuestionService.SORT_VOTES,
+                String.valueOf(cursor), 2);
+        items = (List<Map<String, Object>>) second.get("items");
+        assertEquals(List.of("3"), items.stream().map(q -> q.get("id")).toList());
+        assertNull(second.get("nextCursor"));
+    }
+
+    @Test
+    void emptyVotesPageHasNoCursor() {
+        when(zSetOps.reverseRangeByScoreWithScores(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(Collections.emptySet());
+
+        Map<String, Object> page = service.getPage("L1", null, LiveQuestionService.SORT_VOTES, null, 10);
+        assertEquals(List.of(), page.get("items"));
+        assertNull(page.get("nextCursor"));
+    }
+
+    private static double score(long votes, long seq) {
+        return (double) (votes * LiveQuestionService.VOTE_FACTOR - seq);
+    }
+
+    private static Set<ZSetOperations.TypedTuple<String>> tuples(Object... pairs) {
+        Set<ZSetOperations.TypedTuple<String>> set = new LinkedHashSet<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            set.add(new DefaultTypedTuple<>((String) pairs[i], (Double) pairs[i + 1]));
+        }
+        return set;
+    }
+}
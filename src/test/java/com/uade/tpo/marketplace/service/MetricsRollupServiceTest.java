@@ -0,0 +1,62 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.service.MetricsRollupService.Tier;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MetricsRollupServiceTest {
+
+    @Test
+    void daysStartAtLocalMidnight() {
+        MetricsRollupService service = newService("America/Argentina/Buenos_Aires");
+
+        // 02:30 UTC del 10/03 todavía es el 09/03 en Buenos Aires (UTC-3)
+        assertEquals(ms("2026-03-09T03:00:00Z"), service.floor(Tier.DIA, ms("2026-03-10T02:30:00Z")));
+        assertEquals(ms("2026-03-10T03:00:00Z"), service.next(Tier.DIA, ms("2026-03-09T03:00:00Z")));
+    }
+
+    @Test
+    void dayWithDaylightSavingChangeLastsTwentyThreeHours() {
+        MetricsRollupService service = newService("America/New_York");
+
+        long start = service.floor(Tier.DIA, ms("2026-03-08T12:00:00Z"));
+        assertEquals(ms("2026-03-08T05:00:00Z"), start);
+        assertEquals(23 * 3_600_000L, service.next(Tier.DIA, start) - start);
+    }
+
+    @Test
+    void hoursFollowZonesWithHalfHourOffsets() {
+        MetricsRollupService service = newService("Asia/Kolkata");
+
+        assertEquals(ms("2026-03-10T02:30:00Z"), service.floor(Tier.HORA, ms("2026-03-10T02:59:00Z")));
+        assertEquals(ms("2026-03-10T01:30:00Z"), service.floor(Tier.HORA, ms("2026-03-10T02:29:00Z")));
+    }
+
+    @Test
+    void cursorFromAnotherZoneClosesAtNextLocalBoundary() {
+        MetricsRollupService service = newService("America/Argentina/Buenos_Aires");
+
+        // Cursor alineado a medianoche UTC: el intervalo parcial termina en la medianoche local
+        long cursor = ms("2026-03-10T00:00:00Z");
+        assertEquals(ms("2026-03-10T03:00:00Z"), service.next(Tier.DIA, service.floor(Tier.DIA, cursor)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MetricsRollupService newService(String zone) {
+        LiveEventBus liveEventBus = mock(LiveEventBus.class);
+        when(liveEventBus.getNodeId()).thenReturn("node-1");
+        return new MetricsRollupService(mock(RedisTemplate.class), mock(MongoTemplate.class), liveEventBus,
+                15_000, 3, 90, 1095, zone);
+    }
+
+    private static long ms(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
@@ -0,0 +1,154 @@
+package com.uade.tpo.marketplace.service;
+
+import com.uade.tpo.marketplace.controllers.config.RedisScripts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+class ViewIngestionServiceTest {
+
+    private AtomicLong applied;
+    private ViewIngestionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = spy(newService(10_000));
+        applied = new AtomicLong();
+        // Suma de las vistas que llegarían a Redis
+        doAnswer(invocation -> {
+            Map<String, Long> deltas = invocation.getArgument(0);
+            deltas.values().forEach(applied::addAndGet);
+            return null;
+        }).when(service).applyViewDeltas(anyMap());
+    }
+
+    @Test
+    void flushConcurrentWithRegisterKeepsEveryView() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+
+        // Flush frecuente mientras se registran vistas: el drenado compite con los incrementos
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                service.flush();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        flusher.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            pool.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    service.register("content-" + (i % 3));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        done.set(true);
+        flusher.join();
+        service.flush();
+        service.flush();
+
+        assertEquals((long) producers * perProducer, applied.get());
+    }
+
+    @Test
+    void idleCountersAreReleasedAndReusable() {
+        service.register("content-1");
+        // Tras muchos flushes sin vistas el contador se quita del mapa
+        for (int i = 0; i < 100; i++) {
+            service.flush();
+        }
+        service.register("content-1");
+        service.flush();
+
+        assertEquals(2, applied.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void viewsAreRetriedWhenRedisIsUnavailable() {
+        doThrow(new RedisConnectionFailureException("sin conexión"))
+                .doAnswer(invocation -> {
+                    Map<String, Long> deltas = invocation.getArgument(0);
+                    deltas.values().forEach(applied::addAndGet);
+                    return null;
+                })
+                .when(service).applyViewDeltas(anyMap());
+
+        service.register("content-1");
+        service.register("content-1");
+        service.flush();
+        assertEquals(0, applied.get());
+
+        service.register("content-1");
+        service.flush();
+        assertEquals(3, applied.get());
+    }
+
+    @Test
+    void viewsAreNotRetriedAfterPartialPipelineErrors() {
+        doThrow(new IllegalStateException("respuesta inválida"))
+                .doAnswer(invocation -> {
+                    Map<String, Long> deltas = invocation.getArgument(0);
+                    deltas.values().forEach(applied::addAndGet);
+                    return null;
+                })
+                .when(service).applyViewDeltas(anyMap());
+
+        service.register("content-1");
+        service.flush();
+        service.flush();
+        assertEquals(0, applied.get());
+    }
+
+    @Test
+    void fullBufferDropsNewContentsWithoutWritingOnTheCaller() {
+        ViewIngestionService small = spy(newService(1));
+        AtomicLong written = new AtomicLong();
+        doAnswer(invocation -> {
+            Map<String, Long> deltas = invocation.getArgument(0);
+            deltas.values().forEach(written::addAndGet);
+            return null;
+        }).when(small).applyViewDeltas(anyMap());
+
+        small.register("content-1");
+        small.register("content-2");
+        small.register("content-1");
+        assertEquals(0, written.get());
+
+        small.flush();
+        assertEquals(2, written.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ViewIngestionService newService(int maxPending) {
+        return new ViewIngestionService(mock(RedisTemplate.class), mock(RedisScripts.class),
+                mock(ContentMetaCache.class), mock(TrendingService.class), mock(MetricsRollupService.class),
+                true, maxPending, 1_800_000);
+    }
+}